@@ -0,0 +1,107 @@
+package nl.kabisa.vertx;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+
+/**
+ * Drives the full HTTP, event bus, auth and echo chain of an in-process deployment. The auth and echo services are
+ * called over TCP only if {@code preferLocalServices} is false.
+ *
+ * Every benchmark thread sends one request at a time, so the number of threads is the number of concurrent requests.
+ * Each thread sends its requests from its own event loop context: the HTTP client occasionally never completes a request
+ * made from a non Vert.x thread under contention, which stalls the benchmark. Run with {@code -bm sample} to obtain
+ * latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({ "1" })
+    private int instances;
+
+    @Param({ "16", "1024" })
+    private int bodyLength;
+
+    @Param({ "true" })
+    private boolean preferLocalServices;
+
+    // VIRTUAL_THREAD requires Java 21
+    @Param({ "EVENT_LOOP" })
+    private String threadingModel;
+
+    private Vertx vertx;
+    private HttpClient httpClient;
+    private Buffer body;
+
+    @Setup
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        Application.deploy(vertx, new DeploymentOptions().setInstances(instances)
+                        .setConfig(new JsonObject()
+                                .put("preferLocalServices", preferLocalServices)
+                                .put("tcpClientThreadingModel", threadingModel)))
+                .toCompletionStage().toCompletableFuture().get();
+        httpClient = vertx.createHttpClient(new PoolOptions().setHttp1MaxSize(64));
+        body = Buffer.buffer("x".repeat(bodyLength));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get();
+    }
+
+    @State(Scope.Thread)
+    public static class ClientContext {
+
+        private Context context;
+
+        @Setup
+        public void setUp(PipelineBenchmark benchmark) {
+            context = benchmark.vertx.getOrCreateContext();
+        }
+    }
+
+    private Buffer request(ClientContext client) throws Exception {
+        var response = new CompletableFuture<Buffer>();
+        client.context.runOnContext(v -> httpClient.request(HttpMethod.POST, 8080, "localhost", "/")
+                .compose(request -> request.send(body))
+                .compose(HttpClientResponse::body)
+                .onSuccess(response::complete)
+                .onFailure(response::completeExceptionally));
+        return response.get();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Buffer sequential(ClientContext client) throws Exception {
+        return request(client);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Buffer concurrent16(ClientContext client) throws Exception {
+        return request(client);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Buffer concurrent64(ClientContext client) throws Exception {
+        return request(client);
+    }
+}
@@ -0,0 +1,32 @@
+package nl.kabisa.vertx.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.vertx.core.buffer.Buffer;
+import nl.kabisa.vertx.tcp.EchoRequest;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EchoRequestBenchmark {
+
+    @Param({ "0", "16", "1024", "65536" })
+    private int bodyLength;
+
+    private Buffer body;
+
+    @Setup
+    public void setUp() {
+        body = Buffer.buffer("x".repeat(bodyLength));
+    }
+
+    @Benchmark
+    public EchoRequest echoRequest() {
+        return HttpServerVerticle.echoRequest(body, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,54 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.google.common.primitives.Bytes;
+
+import io.vertx.core.buffer.Buffer;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpperCaseBenchmark {
+
+    private static final int INPUT_OFFSET = 1 + RandomTokenGenerator.LENGTH;
+    private static final byte OK = 1;
+
+    @Param({ "16", "1024", "65536" })
+    private int payloadLength;
+
+    @Param({ "ascii", "utf8" })
+    private String text;
+
+    private Buffer request;
+
+    @Setup
+    public void setUp() {
+        var unit = "ascii".equals(text) ? "no touching " : "no tüching ";
+        var payload = unit.repeat(payloadLength / unit.length() + 1).substring(0, payloadLength);
+        request = Batch.single(TokenStore.encode(UUID.randomUUID()), Buffer.buffer(payload));
+    }
+
+    @Benchmark
+    public Buffer stringBased() {
+        var upperCased = request.getString(INPUT_OFFSET, request.length()).toUpperCase(Locale.ROOT).getBytes();
+        return new Frame(1, Buffer.buffer(Bytes.concat(new byte[] { OK }, upperCased))).toBuffer();
+    }
+
+    @Benchmark
+    public Buffer byteBased() {
+        return UpperCase.frame(1, OK, request, INPUT_OFFSET);
+    }
+
+    @Benchmark
+    public Buffer chunked() {
+        return UpperCase.chunkedFrame(1, OK, request, INPUT_OFFSET, 16 * 1024);
+    }
+}
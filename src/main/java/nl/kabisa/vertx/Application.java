@@ -1,6 +1,10 @@
 package nl.kabisa.vertx;
 
 import io.vertx.core.*;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+import nl.kabisa.vertx.config.Configuration;
 import nl.kabisa.vertx.http.HttpServerVerticle;
 import nl.kabisa.vertx.tcp.*;
 import org.slf4j.Logger;
@@ -12,15 +16,51 @@ public class Application {
 
     private static Vertx vertx;
 
+    /**
+     * Deploys all verticles. The TCP client runs on event loops, unless the {@code tcpClientThreadingModel} key of the
+     * configuration is {@code VIRTUAL_THREAD}, which requires Java 21.
+     */
+    public static Future<String> deploy(Vertx vertx, DeploymentOptions options) {
+        var config = options.getConfig() != null ? options.getConfig() : new JsonObject();
+        var tcpClientOptions = new DeploymentOptions(options)
+                .setThreadingModel(ThreadingModel.valueOf(config.getString("tcpClientThreadingModel", ThreadingModel.EVENT_LOOP.name())));
+
+        return Future.all(vertx.deployVerticle(AuthServiceVerticle::new, options),
+                        vertx.deployVerticle(ScreamingEchoServiceVerticle::new, options),
+                        vertx.deployVerticle(TcpClientVerticle::new, tcpClientOptions))
+                .compose(s -> vertx.deployVerticle(HttpServerVerticle::new, options));
+    }
+
+    private static void logTransport(Vertx vertx, boolean preferNativeTransport) {
+        if (vertx.isNativeTransportEnabled()) {
+            LOGGER.info("Using native transport");
+        } else if (preferNativeTransport) {
+            LOGGER.info("Native transport unavailable, falling back to NIO", vertx.unavailableNativeTransportCause());
+        } else {
+            LOGGER.info("Using NIO transport");
+        }
+    }
+
     public static void main(String[] args) {
         LOGGER.info("Starting");
 
-        vertx = Vertx.vertx();
+        var metricsOptions = new MicrometerMetricsOptions()
+                .setPrometheusOptions(new VertxPrometheusOptions().setEnabled(true))
+                .setJvmMetricsEnabled(true)
+                .setEnabled(true);
+        var preferNativeTransport = Boolean.parseBoolean(System.getProperty("preferNativeTransport", "true"));
+        vertx = Vertx.vertx(new VertxOptions()
+                .setMetricsOptions(metricsOptions)
+                .setPreferNativeTransport(preferNativeTransport));
+        logTransport(vertx, preferNativeTransport);
 
-        CompositeFuture.all(vertx.deployVerticle(new AuthServiceVerticle()),
-                        vertx.deployVerticle(new ScreamingEchoServiceVerticle()),
-                        vertx.deployVerticle(new TcpClientVerticle()))
-                .compose(s -> vertx.deployVerticle(new HttpServerVerticle()))
+        var configPath = System.getProperty("config", Configuration.DEFAULT_PATH);
+        Configuration.retriever(vertx, configPath, Configuration.DEFAULT_SCAN_PERIOD).getConfig()
+                .compose(config -> {
+                    var instances = config.getInteger("instances", Runtime.getRuntime().availableProcessors());
+                    LOGGER.info("Deploying {} instances of each verticle", instances);
+                    return deploy(vertx, new DeploymentOptions().setInstances(instances).setConfig(config));
+                })
                 .andThen(s -> {
                     if (s.succeeded()) {
                         LOGGER.info("All verticles started successfully");
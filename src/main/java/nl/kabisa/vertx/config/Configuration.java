@@ -0,0 +1,52 @@
+package nl.kabisa.vertx.config;
+
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Loads the configuration passed to the verticles, and tells them when it changes.
+ *
+ * Keys are read from a JSON file, then from environment variables, and then from system properties, where later
+ * sources override earlier ones. The file is optional. All sources are scanned periodically; when the configuration
+ * has changed, the new configuration is published on {@link #CHANGED_ADDRESS}, so that verticles can apply the keys
+ * they can change while running. Other keys, such as ports, only take effect after a restart.
+ */
+public final class Configuration {
+
+    public static final String CHANGED_ADDRESS = "config.changed";
+    public static final String DEFAULT_PATH = "conf/config.json";
+    public static final long DEFAULT_SCAN_PERIOD = 5_000;
+
+    private Configuration() {
+    }
+
+    public static ConfigRetriever retriever(Vertx vertx, String path, long scanPeriod) {
+        var file = new ConfigStoreOptions()
+                .setType("file")
+                .setOptional(true)
+                .setConfig(new JsonObject().put("path", path));
+        var env = new ConfigStoreOptions().setType("env");
+        var sys = new ConfigStoreOptions().setType("sys");
+
+        var retriever = ConfigRetriever.create(vertx, new ConfigRetrieverOptions()
+                .addStore(file)
+                .addStore(env)
+                .addStore(sys)
+                .setScanPeriod(scanPeriod));
+        retriever.listen(change -> vertx.eventBus().publish(CHANGED_ADDRESS, change.getNewConfiguration()));
+        return retriever;
+    }
+
+    /**
+     * Applies the given configuration now, and every configuration published on {@link #CHANGED_ADDRESS} afterwards.
+     * The handler runs on the event loop of the calling verticle, and stops receiving changes when it is undeployed.
+     */
+    public static void watch(Vertx vertx, JsonObject config, Handler<JsonObject> handler) {
+        handler.handle(config);
+        vertx.eventBus().<JsonObject> localConsumer(CHANGED_ADDRESS, message -> handler.handle(message.body()));
+    }
+}
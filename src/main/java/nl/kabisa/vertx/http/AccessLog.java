@@ -0,0 +1,65 @@
+package nl.kabisa.vertx.http;
+
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.http.HttpServerRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rate-limited access log, writing at most a fixed number of entries per second.
+ *
+ * Every entry has the same fields: method, path, status, bytes read and written, latency in microseconds, and the number
+ * of requests that were not logged since the previous entry. Request and response bodies are never rendered.
+ * An access log is owned by a single verticle instance and must only be used from that verticle's event loop.
+ */
+public class AccessLog {
+
+    public static final int DEFAULT_MAX_RATE = 10;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("access");
+
+    private int maxRate;
+    private long windowStart;
+    private int logged;
+    private long skipped;
+
+    /**
+     * @param maxRate the maximum number of entries per second, or 0 to disable the access log
+     */
+    public AccessLog(int maxRate) {
+        this.maxRate = maxRate;
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Replaces the maximum number of entries per second. The current window and the count of skipped requests are kept.
+     */
+    public void setMaxRate(int maxRate) {
+        this.maxRate = maxRate;
+    }
+
+    public void log(HttpServerRequest request, long startTime) {
+        if (maxRate <= 0 || !LOGGER.isInfoEnabled()) {
+            return;
+        }
+
+        var now = System.nanoTime();
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStart = now;
+            logged = 0;
+        }
+
+        if (logged >= maxRate) {
+            ++skipped;
+            return;
+        }
+
+        ++logged;
+        var response = request.response();
+        LOGGER.info("method={} path={} status={} bytesRead={} bytesWritten={} latency={} skipped={}",
+                request.method(), request.path(), response.getStatusCode(), request.bytesRead(), response.bytesWritten(),
+                TimeUnit.NANOSECONDS.toMicros(now - startTime), skipped);
+        skipped = 0;
+    }
+}
@@ -0,0 +1,174 @@
+package nl.kabisa.vertx.http;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * Write stream that forwards every chunk written to it and writes the results to an output stream, in order.
+ *
+ * At most a fixed number of chunks is forwarded at the same time. Beyond that, the write queue is reported as full,
+ * which allows a pipe to pause the source until results have been written. Chunks are only ever cut at UTF-8 character
+ * boundaries, so a multibyte character split over two chunks is forwarded in one piece.
+ */
+public class ForwardingWriteStream implements WriteStream<Buffer> {
+
+    private final Function<Buffer, Future<Buffer>> forwarder;
+    private final WriteStream<Buffer> output;
+    private final int maxInFlight;
+    private final Deque<Future<Buffer>> inFlight = new ArrayDeque<>();
+    private final Promise<Void> endPromise = Promise.promise();
+
+    private Buffer remainder = Buffer.buffer();
+    private Handler<Throwable> exceptionHandler;
+    private Handler<Void> drainHandler;
+    private boolean ending;
+    private boolean failed;
+
+    public ForwardingWriteStream(Function<Buffer, Future<Buffer>> forwarder, WriteStream<Buffer> output, int maxInFlight) {
+        this.forwarder = forwarder;
+        this.output = output;
+        this.maxInFlight = maxInFlight;
+
+        output.drainHandler(v -> checkDrained());
+    }
+
+    static int completeUtf8Length(Buffer buffer) {
+        var length = buffer.length();
+        for (var i = length - 1; i >= Math.max(0, length - 4); --i) {
+            var b = buffer.getByte(i);
+            if ((b & 0xC0) == 0x80) {
+                continue;
+            }
+
+            int sequenceLength;
+            if ((b & 0xE0) == 0xC0) {
+                sequenceLength = 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                sequenceLength = 3;
+            } else if ((b & 0xF8) == 0xF0) {
+                sequenceLength = 4;
+            } else {
+                sequenceLength = 1;
+            }
+
+            return length - i < sequenceLength ? i : length;
+        }
+
+        return length;
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+        if (failed) {
+            return Future.failedFuture("Forwarding failed");
+        }
+
+        var buffer = remainder.length() == 0 ? data : remainder.appendBuffer(data);
+        var completeLength = completeUtf8Length(buffer);
+        remainder = buffer.getBuffer(completeLength, buffer.length());
+
+        if (completeLength == 0) {
+            return Future.succeededFuture();
+        }
+
+        return forward(completeLength == buffer.length() ? buffer : buffer.getBuffer(0, completeLength));
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+        write(data).onComplete(handler);
+    }
+
+    @Override
+    public Future<Void> end() {
+        ending = true;
+        if (remainder.length() > 0 && !failed) {
+            forward(remainder);
+            remainder = Buffer.buffer();
+        }
+
+        writeCompletedResults();
+        return endPromise.future();
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+        end().onComplete(handler);
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return inFlight.size() >= maxInFlight || output.writeQueueFull();
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+        drainHandler = handler;
+        return this;
+    }
+
+    private Future<Void> forward(Buffer chunk) {
+        var result = forwarder.apply(chunk);
+        inFlight.addLast(result);
+        result.onComplete(ar -> writeCompletedResults());
+
+        return result.mapEmpty();
+    }
+
+    private void writeCompletedResults() {
+        while (!inFlight.isEmpty() && inFlight.peekFirst().isComplete()) {
+            var result = inFlight.pollFirst();
+            if (result.failed()) {
+                fail(result.cause());
+                return;
+            }
+            output.write(result.result());
+        }
+
+        if (ending && inFlight.isEmpty()) {
+            endPromise.tryComplete();
+        } else {
+            checkDrained();
+        }
+    }
+
+    private void checkDrained() {
+        var handler = drainHandler;
+        if (handler != null && !failed && inFlight.size() <= maxInFlight / 2 && !output.writeQueueFull()) {
+            drainHandler = null;
+            handler.handle(null);
+        }
+    }
+
+    private void fail(Throwable cause) {
+        if (failed) {
+            return;
+        }
+
+        failed = true;
+        inFlight.clear();
+        if (exceptionHandler != null) {
+            exceptionHandler.handle(cause);
+        }
+        endPromise.tryFail(cause);
+    }
+}
@@ -1,15 +1,25 @@
 package nl.kabisa.vertx.http;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import io.vertx.core.Promise;
 
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonObject;
-import nl.kabisa.vertx.tcp.TcpClientVerticle;
+import io.vertx.core.net.PemKeyCertOptions;
+import nl.kabisa.vertx.config.Configuration;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
+import nl.kabisa.vertx.tcp.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,54 +27,215 @@ public class HttpServerVerticle extends AbstractVerticle {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerVerticle.class);
 
-    private JsonObject requestObject(Buffer buffer) {
-        var requestObject = new JsonObject();
-        if (buffer.length() == 0) {
-            requestObject.put("body", "Hello world!");
-        } else {
-            requestObject.put("body", buffer.toString());
+    private static final int DEFAULT_PORT = 8080;
+    private static final long DEFAULT_STREAMING_THRESHOLD = 64 * 1024;
+    private static final int DEFAULT_STREAMING_MAX_IN_FLIGHT = 4;
+
+    private static final Buffer DEFAULT_BODY = Buffer.buffer("Hello world!");
+
+    private static final long DEFAULT_REQUEST_TIMEOUT = 5_000;
+    private static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private static final long DEFAULT_IDLE_TIMEOUT = 60_000;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 1;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    private static final String METRICS_PATH = "/metrics";
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private long streamingThreshold;
+    private int streamingMaxInFlight;
+    private long requestTimeout;
+    private boolean compressionSupported;
+    private int compressionThreshold;
+    private PipelineMetrics metrics;
+    private Timer replyTimer;
+    private AtomicInteger pendingReplies;
+    private AccessLog accessLog;
+    private ResponseCache responseCache;
+
+    static EchoRequest echoRequest(Buffer buffer, long deadline) {
+        return new EchoRequest(buffer.length() == 0 ? DEFAULT_BODY : buffer, deadline);
+    }
+
+    /**
+     * Returns the time by which the request must be answered. Clients can shorten the configured timeout with the
+     * {@value #REQUEST_TIMEOUT_HEADER} header, but not extend it.
+     */
+    private long deadline(HttpServerRequest request) {
+        var timeout = requestTimeout;
+        var header = request.getHeader(REQUEST_TIMEOUT_HEADER);
+        if (header != null) {
+            try {
+                timeout = Math.min(timeout, Long.parseLong(header));
+            } catch (NumberFormatException e) {
+                // Fall back to the configured timeout
+            }
         }
-        return requestObject;
+        return System.currentTimeMillis() + timeout;
     }
 
-    private Future<String> forwardRequest(JsonObject requestObject) {
-        var promise = Promise.<String>promise();
+    private Future<Buffer> forwardRequest(EchoRequest echoRequest) {
+        var timeout = echoRequest.deadline() - System.currentTimeMillis();
+        if (timeout <= 0) {
+            return Future.failedFuture(new DeadlineExceededException("Deadline exceeded before forwarding request"));
+        }
 
-        vertx.eventBus().request(TcpClientVerticle.REQUEST_ADDRESS, requestObject).andThen(reply -> {
-            if (reply.succeeded()) {
-                promise.complete(reply.result().body().toString());
+        var promise = Promise.<Buffer>promise();
+
+        pendingReplies.incrementAndGet();
+        var eventBus = vertx.eventBus();
+        var deliveryOptions = new DeliveryOptions().setSendTimeout(timeout);
+        PipelineMetrics.time(replyTimer, () -> eventBus.<EchoResponse> request(TcpClientVerticle.REQUEST_ADDRESS, echoRequest, deliveryOptions))
+                .andThen(reply -> {
+                    pendingReplies.decrementAndGet();
+                    if (reply.succeeded()) {
+                        promise.complete(reply.result().body().body());
+                    } else {
+                        var cause = reply.cause();
+                        var statusCode = statusCode(cause);
+                        if (statusCode == 504) {
+                            LOGGER.debug("No response from TCP client before deadline", cause);
+                        } else if (statusCode == 503) {
+                            LOGGER.debug("TCP client rejected request", cause);
+                        } else {
+                            LOGGER.error("Unable to receive response from TCP client", cause);
+                        }
+                        promise.fail(cause);
+                    }
+                });
+
+        return promise.future();
+    }
+
+    private static int statusCode(Throwable cause) {
+        if (cause instanceof ReplyException replyException) {
+            return switch (replyException.failureType()) {
+                case TIMEOUT -> 504;
+                case NO_HANDLERS -> 503;
+                case RECIPIENT_FAILURE -> replyException.failureCode();
+                default -> 500;
+            };
+        }
+        return cause instanceof DeadlineExceededException ? 504 : 500;
+    }
+
+    private boolean isStreamed(HttpServerRequest request) {
+        if (streamingThreshold < 0) {
+            return false;
+        }
+
+        var contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength == null) {
+            return request.headers().contains(HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CHUNKED, true);
+        }
+
+        try {
+            return Long.parseLong(contentLength) > streamingThreshold;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void streamRequest(HttpServerRequest request, long deadline) {
+        var response = request.response().setChunked(true);
+        var forwardingStream = new ForwardingWriteStream(
+                chunk -> forwardRequest(new EchoRequest(chunk, deadline)), response, streamingMaxInFlight);
+
+        request.pipeTo(forwardingStream).andThen(asyncResult -> {
+            if (asyncResult.succeeded()) {
+                response.end();
+            } else if (!response.headWritten()) {
+                response.setStatusCode(statusCode(asyncResult.cause())).end();
             } else {
-                var cause = reply.cause();
-                LOGGER.error("Unable to receive response from TCP client", cause);
-                promise.fail(cause);
+                response.reset();
             }
         });
+    }
 
-        return promise.future();
+    private void serveMetrics(HttpServerRequest request) {
+        var scrape = metrics.scrape();
+        if (scrape == null) {
+            request.response().setStatusCode(404).end();
+        } else {
+            request.response().putHeader(HttpHeaders.CONTENT_TYPE, PROMETHEUS_CONTENT_TYPE).end(scrape);
+        }
     }
 
     private void handleRequest(HttpServerRequest request) {
-        LOGGER.info("Incoming request for path: {}", request.path());
+        var startTime = System.nanoTime();
+        request.response().endHandler(v -> accessLog.log(request, startTime));
+
+        if (request.method() == HttpMethod.GET && METRICS_PATH.equals(request.path())) {
+            serveMetrics(request);
+            return;
+        }
+
+        var deadline = deadline(request);
+        if (isStreamed(request)) {
+            streamRequest(request, deadline);
+            return;
+        }
 
         request.bodyHandler(buffer -> {
-            var requestObject = requestObject(buffer);
+            var echoRequest = echoRequest(buffer, deadline);
+            var cached = responseCache != null ? responseCache.get(echoRequest.body()) : null;
+            if (cached != null) {
+                respond(request, cached.response(), cached.etag());
+                return;
+            }
 
-            forwardRequest(requestObject).andThen(asyncResponse -> {
+            forwardRequest(echoRequest).andThen(asyncResponse -> {
                 if (asyncResponse.succeeded()) {
-                    request.response().end(asyncResponse.result());
+                    var body = asyncResponse.result();
+                    respond(request, body, responseCache != null ? responseCache.put(echoRequest.body(), body).etag() : null);
                 } else {
-                    request.response().setStatusCode(((ReplyException) asyncResponse.cause()).failureCode()).end();
+                    request.response().setStatusCode(statusCode(asyncResponse.cause())).end();
                 }
             });
         });
     }
 
+    /**
+     * Sends the given body, unless the client already has a response with the given entity tag. In that case, a GET or
+     * HEAD request gets only 304 Not Modified, and any other request 412 Precondition Failed.
+     */
+    private void respond(HttpServerRequest request, Buffer body, String etag) {
+        var response = request.response();
+        if (etag != null) {
+            response.putHeader(HttpHeaders.ETAG, etag);
+            if (ResponseCache.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                var method = request.method();
+                response.setStatusCode(method == HttpMethod.GET || method == HttpMethod.HEAD ? 304 : 412).end();
+                return;
+            }
+        }
+
+        if (compressionSupported && body.length() < compressionThreshold) {
+            response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+        }
+        response.end(body);
+    }
+
     @Override
     public void start(Promise<Void> startPromise) {
         LOGGER.info("Starting");
 
-        var options = new HttpServerOptions().setPort(8080);
-        var server = vertx.createHttpServer(options);
+        compressionSupported = config().getBoolean("compressionSupported", false);
+        Configuration.watch(vertx, config(), this::configure);
+
+        BufferMessageCodec.registerEchoCodecs(vertx);
+
+        metrics = PipelineMetrics.shared(vertx);
+        replyTimer = metrics.stageTimer("eventbus.reply");
+        pendingReplies = metrics.pendingReplies();
+
+        var responseCacheMaxBytes = config().getLong("responseCacheMaxBytes", ResponseCache.DEFAULT_MAX_BYTES);
+        if (responseCacheMaxBytes > 0) {
+            responseCache = ResponseCache.shared(vertx, responseCacheMaxBytes, config().getLong("responseCacheTtl", ResponseCache.DEFAULT_TTL));
+        }
+
+        var server = vertx.createHttpServer(serverOptions());
 
         server.requestHandler(this::handleRequest);
 
@@ -76,4 +247,51 @@ public class HttpServerVerticle extends AbstractVerticle {
             }
         });
     }
+
+    /**
+     * Applies the keys that can change while running.
+     */
+    private void configure(JsonObject config) {
+        streamingThreshold = config.getLong("streamingThreshold", DEFAULT_STREAMING_THRESHOLD);
+        streamingMaxInFlight = config.getInteger("streamingMaxInFlight", DEFAULT_STREAMING_MAX_IN_FLIGHT);
+        requestTimeout = config.getLong("requestTimeout", DEFAULT_REQUEST_TIMEOUT);
+        compressionThreshold = config.getInteger("compressionThreshold", DEFAULT_COMPRESSION_THRESHOLD);
+        var accessLogMaxRate = config.getInteger("accessLogMaxRate", AccessLog.DEFAULT_MAX_RATE);
+        if (accessLog == null) {
+            accessLog = new AccessLog(accessLogMaxRate);
+        } else {
+            accessLog.setMaxRate(accessLogMaxRate);
+        }
+    }
+
+    /**
+     * HTTP/2 is available over cleartext, and over TLS with ALPN once a certificate is configured. Small responses are
+     * never compressed, since compressing them costs more than sending the few bytes saved.
+     * TCP fast open and quick ack stay off by default: with the native transport, neither changed the latency of the
+     * load generator's requests beyond run-to-run noise, and fast open only saves a round trip on new connections.
+     */
+    private HttpServerOptions serverOptions() {
+        var options = new HttpServerOptions()
+                .setPort(config().getInteger("httpPort", DEFAULT_PORT))
+                .setHttp2ClearTextEnabled(config().getBoolean("http2ClearText", true))
+                .setIdleTimeout(config().getLong("httpIdleTimeout", DEFAULT_IDLE_TIMEOUT).intValue())
+                .setIdleTimeoutUnit(TimeUnit.MILLISECONDS)
+                .setTcpKeepAlive(config().getBoolean("tcpKeepAlive", true))
+                .setTcpNoDelay(config().getBoolean("tcpNoDelay", true))
+                .setTcpFastOpen(config().getBoolean("tcpFastOpen", false))
+                .setTcpQuickAck(config().getBoolean("tcpQuickAck", false))
+                .setReusePort(config().getBoolean("reusePort", vertx.isNativeTransportEnabled()))
+                .setCompressionSupported(compressionSupported)
+                .setCompressionLevel(config().getInteger("compressionLevel", DEFAULT_COMPRESSION_LEVEL));
+
+        var certPath = config().getString("tlsCertPath");
+        var keyPath = config().getString("tlsKeyPath");
+        if (certPath != null && keyPath != null) {
+            options.setSsl(true)
+                    .setUseAlpn(true)
+                    .setKeyCertOptions(new PemKeyCertOptions().setCertPath(certPath).setKeyPath(keyPath));
+        }
+
+        return options;
+    }
 }
@@ -0,0 +1,117 @@
+package nl.kabisa.vertx.http;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.shareddata.Shareable;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
+
+/**
+ * Cache of responses to request bodies, so that repeated requests don't have to pass through the TCP services.
+ *
+ * Entries are keyed by a 128-bit hash of the request body, and expire a fixed time after they were added. The cache is
+ * bounded by the number of bytes of the requests and responses it holds. Since the hash isn't cryptographic, an entry is
+ * only returned if its request is equal to the one looked up.
+ *
+ * A single cache is shared by all verticles deployed on a Vert.x instance, so every method is thread-safe.
+ */
+public class ResponseCache implements Shareable {
+
+    public static final long DEFAULT_MAX_BYTES = 0;
+    public static final long DEFAULT_TTL = 60_000;
+
+    public static final String NAME = "responses";
+
+    private static final String LOCAL_MAP = "RESPONSE_CACHE";
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Cache<HashCode, Entry> cache;
+
+    public ResponseCache(long maxBytes, long ttl) {
+        this(maxBytes, ttl, Ticker.systemTicker());
+    }
+
+    ResponseCache(long maxBytes, long ttl, Ticker ticker) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<HashCode, Entry> weigher((hash, entry) -> entry.request().length() + entry.response().length())
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cache shared by all verticles of the given Vert.x instance, creating it with the given limits if it
+     * doesn't exist yet. Its hits, misses and evictions are exposed as {@code cache} metrics named {@value #NAME}.
+     */
+    public static ResponseCache shared(Vertx vertx, long maxBytes, long ttl) {
+        return vertx.sharedData().<String, ResponseCache> getLocalMap(LOCAL_MAP)
+                .computeIfAbsent(LOCAL_MAP, name -> {
+                    var responseCache = new ResponseCache(maxBytes, ttl);
+                    GuavaCacheMetrics.monitor(PipelineMetrics.shared(vertx).registry(), responseCache.cache, NAME);
+                    return responseCache;
+                });
+    }
+
+    @SuppressWarnings("deprecation")
+    private static HashCode hash(Buffer buffer) {
+        return HASH_FUNCTION.hashBytes(buffer.getByteBuf().nioBuffer());
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Returns whether the value of an {@code If-None-Match} header matches the given entity tag. Weak comparison is used,
+     * as is required for this header.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (var candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cached response to the given request body, or {@code null} if there is none.
+     */
+    public Entry get(Buffer request) {
+        var entry = cache.getIfPresent(hash(request));
+        return entry != null && entry.request().equals(request) ? entry : null;
+    }
+
+    public Entry put(Buffer request, Buffer response) {
+        var entry = new Entry(request, response, "W/\"" + hash(response) + '"');
+        cache.put(hash(request), entry);
+        return entry;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * A response, and the entity tag derived from its contents. The tag is weak, since the same response may be sent
+     * with different content codings.
+     */
+    public record Entry(Buffer request, Buffer response, String etag) {
+    }
+}
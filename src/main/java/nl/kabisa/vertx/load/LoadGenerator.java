@@ -0,0 +1,196 @@
+package nl.kabisa.vertx.load;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import io.vertx.core.*;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.*;
+import nl.kabisa.vertx.load.LoadGeneratorOptions.Mode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends POST requests to the HTTP endpoint and records their latencies, in microseconds, in a histogram.
+ *
+ * In {@link Mode#OPEN open} mode, every request has an intended start time derived from the configured rate, and its
+ * latency is measured from that time rather than from the moment it was actually sent. A request delayed by a slow
+ * server or by a full connection pool therefore counts that delay, so the results are free of coordinated omission.
+ * In {@link Mode#CLOSED closed} mode, the server's response time determines the rate, which is useful for finding the
+ * maximum throughput but understates the latency users would see at that throughput.
+ *
+ * Requests sent during the warmup period are not recorded. All callbacks run on a single event loop.
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final Vertx vertx;
+    private final LoadGeneratorOptions options;
+    private final Buffer payload;
+    private final Histogram histogram = new Histogram(3);
+    private final Promise<Result> resultPromise = Promise.promise();
+
+    private HttpClient httpClient;
+    private long startTime;
+    private long measureFrom;
+    private long endTime;
+    private long sent;
+    private long outstanding;
+    private long errors;
+    private long timerId = -1;
+    private boolean stopped;
+
+    public LoadGenerator(Vertx vertx, LoadGeneratorOptions options) {
+        this.vertx = vertx;
+        this.options = options;
+        this.payload = Buffer.buffer("x".repeat(options.getPayloadSize()));
+    }
+
+    public static void main(String[] args) {
+        var options = new LoadGeneratorOptions()
+                .setHost(System.getProperty("host", LoadGeneratorOptions.DEFAULT_HOST))
+                .setPort(Integer.getInteger("port", LoadGeneratorOptions.DEFAULT_PORT))
+                .setPath(System.getProperty("path", LoadGeneratorOptions.DEFAULT_PATH))
+                .setMode(Mode.valueOf(System.getProperty("mode", LoadGeneratorOptions.DEFAULT_MODE.name()).toUpperCase(Locale.ROOT)))
+                .setRate(Integer.getInteger("rate", LoadGeneratorOptions.DEFAULT_RATE))
+                .setConcurrency(Integer.getInteger("concurrency", LoadGeneratorOptions.DEFAULT_CONCURRENCY))
+                .setConnections(Integer.getInteger("connections", LoadGeneratorOptions.DEFAULT_CONNECTIONS))
+                .setPayloadSize(Integer.getInteger("payloadSize", LoadGeneratorOptions.DEFAULT_PAYLOAD_SIZE))
+                .setWarmup(Long.getLong("warmup", LoadGeneratorOptions.DEFAULT_WARMUP))
+                .setDuration(Long.getLong("duration", LoadGeneratorOptions.DEFAULT_DURATION));
+
+        var vertx = Vertx.vertx();
+        new LoadGenerator(vertx, options).run()
+                .onComplete(asyncResult -> {
+                    if (asyncResult.succeeded()) {
+                        asyncResult.result().report(System.out);
+                    } else {
+                        LOGGER.error("Load generation failed", asyncResult.cause());
+                    }
+                    vertx.close();
+                });
+    }
+
+    public Future<Result> run() {
+        var context = vertx.getOrCreateContext();
+        context.runOnContext(v -> start());
+        return resultPromise.future();
+    }
+
+    private void start() {
+        httpClient = vertx.createHttpClient(
+                new HttpClientOptions().setDefaultHost(options.getHost()).setDefaultPort(options.getPort()),
+                new PoolOptions().setHttp1MaxSize(options.getConnections()));
+
+        LOGGER.info("Sending requests to {}:{}{} in {} mode", options.getHost(), options.getPort(), options.getPath(),
+                options.getMode());
+
+        startTime = System.nanoTime();
+        measureFrom = startTime + TimeUnit.MILLISECONDS.toNanos(options.getWarmup());
+        endTime = measureFrom + TimeUnit.MILLISECONDS.toNanos(options.getDuration());
+
+        if (options.getMode() == Mode.OPEN) {
+            timerId = vertx.setPeriodic(1, id -> sendScheduledRequests());
+            sendScheduledRequests();
+        } else {
+            for (var i = 0; i < options.getConcurrency(); ++i) {
+                sendNextRequest();
+            }
+        }
+    }
+
+    private void sendScheduledRequests() {
+        var now = System.nanoTime();
+        while (!stopped) {
+            var intendedStartTime = startTime + (long) (sent * 1e9 / options.getRate());
+            if (intendedStartTime >= endTime) {
+                vertx.cancelTimer(timerId);
+                stop();
+            } else if (intendedStartTime > now) {
+                return;
+            } else {
+                ++sent;
+                send(intendedStartTime);
+            }
+        }
+    }
+
+    private void sendNextRequest() {
+        var now = System.nanoTime();
+        if (now >= endTime) {
+            stop();
+        } else {
+            send(now).onComplete(v -> sendNextRequest());
+        }
+    }
+
+    private Future<Void> send(long intendedStartTime) {
+        ++outstanding;
+
+        return httpClient.request(HttpMethod.POST, options.getPath())
+                .compose(request -> request.send(payload))
+                .compose(response -> response.body().map(body -> response.statusCode()))
+                .transform(asyncStatusCode -> {
+                    --outstanding;
+                    if (intendedStartTime >= measureFrom) {
+                        if (asyncStatusCode.succeeded() && asyncStatusCode.result() == 200) {
+                            histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartTime));
+                        } else {
+                            ++errors;
+                        }
+                    }
+
+                    if (stopped) {
+                        completeWhenIdle();
+                    }
+                    return Future.succeededFuture();
+                });
+    }
+
+    private void stop() {
+        if (!stopped) {
+            stopped = true;
+            completeWhenIdle();
+        }
+    }
+
+    private void completeWhenIdle() {
+        if (outstanding == 0) {
+            httpClient.close();
+            resultPromise.tryComplete(new Result(options, histogram, errors));
+        }
+    }
+
+    public record Result(LoadGeneratorOptions options, Histogram histogram, long errors) {
+
+        public long requests() {
+            return histogram.getTotalCount() + errors;
+        }
+
+        public double throughput() {
+            return requests() * 1000.0 / options.getDuration();
+        }
+
+        /**
+         * Prints a summary followed by the percentile distribution, in milliseconds, which can be plotted with the
+         * HdrHistogram plotter.
+         */
+        public void report(PrintStream out) {
+            out.printf(Locale.ROOT, "Mode: %s, connections: %d, payload size: %d bytes%n",
+                    options.getMode(), options.getConnections(), options.getPayloadSize());
+            out.printf(Locale.ROOT, "Requests: %d, errors: %d, throughput: %.1f requests/s%n",
+                    requests(), errors, throughput());
+            out.printf(Locale.ROOT, "Latency (ms): p50 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+            out.println();
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package nl.kabisa.vertx.load;
+
+public class LoadGeneratorOptions {
+
+    public enum Mode {
+        /**
+         * Requests are sent at a constant rate, regardless of how fast responses arrive.
+         */
+        OPEN,
+        /**
+         * A fixed number of requests is outstanding at any time; a new request is sent as soon as a response arrives.
+         */
+        CLOSED
+    }
+
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 8080;
+    public static final String DEFAULT_PATH = "/";
+    public static final Mode DEFAULT_MODE = Mode.OPEN;
+    public static final int DEFAULT_RATE = 1000;
+    public static final int DEFAULT_CONCURRENCY = 16;
+    public static final int DEFAULT_CONNECTIONS = 16;
+    public static final int DEFAULT_PAYLOAD_SIZE = 16;
+    public static final long DEFAULT_WARMUP = 5_000;
+    public static final long DEFAULT_DURATION = 30_000;
+
+    private String host = DEFAULT_HOST;
+    private int port = DEFAULT_PORT;
+    private String path = DEFAULT_PATH;
+    private Mode mode = DEFAULT_MODE;
+    private int rate = DEFAULT_RATE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int connections = DEFAULT_CONNECTIONS;
+    private int payloadSize = DEFAULT_PAYLOAD_SIZE;
+    private long warmup = DEFAULT_WARMUP;
+    private long duration = DEFAULT_DURATION;
+
+    public String getHost() {
+        return host;
+    }
+
+    public LoadGeneratorOptions setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public LoadGeneratorOptions setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public LoadGeneratorOptions setPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public LoadGeneratorOptions setMode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the number of requests per second sent in {@link Mode#OPEN open} mode.
+     */
+    public LoadGeneratorOptions setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.rate = rate;
+        return this;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the number of outstanding requests in {@link Mode#CLOSED closed} mode.
+     */
+    public LoadGeneratorOptions setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public LoadGeneratorOptions setConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Connections must be positive");
+        }
+        this.connections = connections;
+        return this;
+    }
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    public LoadGeneratorOptions setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+        return this;
+    }
+
+    public long getWarmup() {
+        return warmup;
+    }
+
+    public LoadGeneratorOptions setWarmup(long warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public LoadGeneratorOptions setDuration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+}
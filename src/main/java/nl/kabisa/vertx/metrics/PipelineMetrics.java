@@ -0,0 +1,147 @@
+package nl.kabisa.vertx.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+/**
+ * Meters for the stages of the request pipeline.
+ *
+ * A single instance is shared by all verticles deployed on a Vert.x instance. Meters are registered with the registry
+ * of the Vert.x metrics backend, so they are exposed together with the built-in Vert.x metrics. When Vert.x runs without
+ * metrics, as in tests, a private Prometheus registry is used instead.
+ */
+public class PipelineMetrics implements Shareable {
+
+    public static final String STAGE_DURATION = "pipeline.stage.duration";
+    public static final String TOKENS = "pipeline.tokens";
+    public static final String OPEN_SOCKETS = "pipeline.sockets.open";
+    public static final String PENDING_REPLIES = "pipeline.eventbus.replies.pending";
+    public static final String REJECTIONS = "pipeline.rejections";
+    public static final String PAUSED_SOCKETS = "pipeline.sockets.paused";
+    public static final String REJECTED_SOCKETS = "pipeline.sockets.rejected";
+    public static final String WORKER_QUEUE = "pipeline.worker.queue";
+
+    private static final String LOCAL_MAP = "PIPELINE_METRICS";
+
+    private final MeterRegistry registry;
+    private final Map<Meter.Id, AtomicInteger> gauges = new ConcurrentHashMap<>();
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static PipelineMetrics shared(Vertx vertx) {
+        return vertx.sharedData().<String, PipelineMetrics> getLocalMap(LOCAL_MAP)
+                .computeIfAbsent(LOCAL_MAP, name -> {
+                    var registry = BackendRegistries.getDefaultNow();
+                    return new PipelineMetrics(registry != null ? registry : new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+                });
+    }
+
+    /**
+     * Records the time it takes for the future returned by the given operation to complete, whether it succeeds or not.
+     */
+    public static <T> Future<T> time(Timer timer, Supplier<Future<T>> operation) {
+        var startTime = System.nanoTime();
+        return operation.get().andThen(asyncResult -> timer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS));
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public Timer stageTimer(String stage) {
+        return Timer.builder(STAGE_DURATION)
+                .description("Time spent in a stage of the request pipeline")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Returns the counter of tokens for which the given operation ({@code issue} or {@code validate}) had the given
+     * outcome ({@code ok}, {@code nok} or {@code fail}).
+     */
+    public Counter tokenCounter(String operation, String outcome) {
+        return Counter.builder(TOKENS)
+                .description("Tokens issued or validated, by outcome")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Returns the counter of requests to the given backend that were rejected without being sent, because its circuit
+     * breaker is open or its concurrency limit is reached.
+     */
+    public Counter rejectionCounter(String backend) {
+        return Counter.builder(REJECTIONS)
+                .description("Requests rejected before reaching a backend")
+                .tag("backend", backend)
+                .register(registry);
+    }
+
+    /**
+     * Returns the timer of the time server sockets of the given service spend paused, because responses can't be
+     * written as fast as requests arrive.
+     */
+    public Timer pausedTimer(String service) {
+        return Timer.builder(PAUSED_SOCKETS)
+                .description("Time server sockets spend not reading while responses are written")
+                .tag("service", service)
+                .register(registry);
+    }
+
+    public Counter rejectedSockets(String service) {
+        return Counter.builder(REJECTED_SOCKETS)
+                .description("Connections closed right away because a server had too many")
+                .tag("service", service)
+                .register(registry);
+    }
+
+    public AtomicInteger openSockets(String side, String service) {
+        return gauge(OPEN_SOCKETS, "Open TCP sockets", Tags.of("side", side, "service", service));
+    }
+
+    public AtomicInteger pendingReplies() {
+        return gauge(PENDING_REPLIES, "Event bus requests to the TCP client awaiting a reply", Tags.empty());
+    }
+
+    /**
+     * Returns the number of tasks submitted to the worker pool of the given service that haven't completed yet.
+     */
+    public AtomicInteger workerQueue(String service) {
+        return gauge(WORKER_QUEUE, "Tasks queued or running on a worker pool", Tags.of("service", service));
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text format, or {@code null} if the registry isn't a Prometheus registry.
+     */
+    public String scrape() {
+        return registry instanceof PrometheusMeterRegistry prometheusRegistry ? prometheusRegistry.scrape() : null;
+    }
+
+    /**
+     * Gauges have to be backed by a single value, shared by all verticle instances, because Micrometer ignores the value
+     * passed when registering a gauge that already exists.
+     */
+    private AtomicInteger gauge(String name, String description, Tags tags) {
+        var id = new Meter.Id(name, tags, null, description, Meter.Type.GAUGE);
+        return gauges.computeIfAbsent(id, key -> {
+            var value = new AtomicInteger();
+            Gauge.builder(name, value, AtomicInteger::get).description(description).tags(tags).register(registry);
+            return value;
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Issues tokens to clients presenting the right credentials.
+ *
+ * Requests and responses are the payloads of the frames the auth service exchanges over TCP: the response is a status
+ * byte, followed by a token if the status is OK. Implementations call the service over TCP ({@link TcpService}) or
+ * within the same Vert.x instance ({@link LocalService}).
+ */
+public interface AuthService {
+
+    /**
+     * Local event bus address the auth service answers on when it is deployed in the same Vert.x instance.
+     */
+    String ADDRESS = "auth.service";
+
+    /**
+     * Requests a token, failing with a {@link DeadlineExceededException} if no response arrives within the given number
+     * of milliseconds.
+     */
+    Future<Buffer> authenticate(Buffer credentials, long timeout);
+}
@@ -1,89 +1,134 @@
 package nl.kabisa.vertx.tcp;
 
 import java.util.Arrays;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.vertx.core.Promise;
 
-import com.google.common.primitives.Bytes;
-
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.AbstractVerticle;
-import io.vertx.core.Future;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetServerOptions;
-import io.vertx.core.net.NetSocket;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class AuthServiceVerticle extends AbstractVerticle {
 
-    public static final String AUTHENTICATED_CLIENTS_MAP = "AUTHENTICATED_CLIENTS_MAP";
+    public static final int DEFAULT_PORT = 3001;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthServiceVerticle.class);
 
-    private static final byte[] SECRET_PASSWORD = { 1, 2, 3, 4 };
-    private static final byte[] OK = new byte[] { 1 };
+    private static final byte[] DEFAULT_SECRET = { 1, 2, 3, 4 };
+    private static final byte OK = 1;
     private static final Buffer NOK = Buffer.buffer(new byte[] { 0 });
     private static final Buffer FAIL = Buffer.buffer(new byte[] { 2 });
 
-    private String nextId() {
-        return UUID.randomUUID().toString();
+    private byte[] secret;
+    private TokenGenerator tokenGenerator;
+    private TokenStore tokenStore;
+    private Counter issuedCounter;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+    private AtomicInteger openSockets;
+    private Counter rejectedSockets;
+    private Timer pausedTimer;
+
+    /**
+     * Returns the secret clients authenticate with, which is configured as a Base64 string.
+     */
+    static byte[] secret(JsonObject config) {
+        return config.getBinary("authSecret", DEFAULT_SECRET);
     }
 
-    private Future<String> generateToken() {
-        var promise = Promise.<String>promise();
-
-        vertx.sharedData().<String, Boolean> getAsyncMap(AUTHENTICATED_CLIENTS_MAP, asyncMap -> {
-            if (asyncMap.succeeded()) {
-                var map = asyncMap.result();
-                var id = nextId();
-                map.put(id, true, putResult -> {
-                    if (putResult.succeeded()) {
-                        promise.complete(id);
-                    } else {
-                        LOGGER.error("Failed to store ({}, {}}) in map {}", id, true, AUTHENTICATED_CLIENTS_MAP, putResult.cause());
-                        promise.fail(putResult.cause());
-                    }
-                });
-            } else {
-                LOGGER.error("Failed to get async map {}", AUTHENTICATED_CLIENTS_MAP, asyncMap.cause());
-                promise.fail(asyncMap.cause());
-            }
-        });
-
-        return promise.future();
+    Buffer generateToken() {
+        var token = tokenGenerator.generate();
+        if (!(tokenGenerator instanceof HmacTokenGenerator)) {
+            tokenStore.add(TokenStore.decode(token));
+        }
+        return token;
     }
 
-    private void handleRequest(NetSocket socket, Buffer buffer) {
-        LOGGER.info("Received buffer: {}", buffer);
-
-        if (buffer.length() >= 4 && Arrays.equals(buffer.getBytes(0, 4), SECRET_PASSWORD)) {
-            generateToken().andThen(asyncToken -> {
-                if (asyncToken.succeeded()) {
-                    socket.write(Buffer.buffer(Bytes.concat(OK, asyncToken.result().getBytes())));
-                } else {
-                    socket.write(FAIL);
-                }
-            });
-        } else {
-            socket.write(NOK);
+    /**
+     * Returns the response to the given credentials, whether they arrived over TCP or on the local address.
+     */
+    private Buffer authenticate(Buffer credentials) {
+        if (credentials.length() < secret.length || !Arrays.equals(credentials.getBytes(0, secret.length), secret)) {
+            rejectedCounter.increment();
+            return NOK;
+        }
+
+        Buffer token;
+        try {
+            token = generateToken();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to generate token", e);
+            failedCounter.increment();
+            return FAIL;
         }
+
+        issuedCounter.increment();
+        return Buffer.buffer(1 + token.length()).appendByte(OK).appendBuffer(token);
+    }
+
+    private void handleRequest(ServerConnection connection, Frame frame) {
+        connection.received();
+        connection.write(new Frame(frame.id(), authenticate(frame.payload())).toBuffer());
     }
 
     @Override
     public void start(Promise<Void> startPromise) {
         LOGGER.info("Starting");
 
-        var options = new NetServerOptions().setPort(3001);
+        secret = secret(config());
+        tokenGenerator = TokenGenerator.create(config());
+        tokenStore = TokenStore.shared(vertx,
+                config().getInteger("tokenStoreCapacity", TokenStore.DEFAULT_CAPACITY),
+                config().getLong("tokenStoreTtl", TokenStore.DEFAULT_TTL));
+        var sweepInterval = config().getLong("tokenStoreSweepInterval", TokenStore.DEFAULT_SWEEP_INTERVAL);
+        vertx.setPeriodic(sweepInterval, id -> tokenStore.sweep(sweepInterval));
+
+        var metrics = PipelineMetrics.shared(vertx);
+        issuedCounter = metrics.tokenCounter("issue", "ok");
+        rejectedCounter = metrics.tokenCounter("issue", "nok");
+        failedCounter = metrics.tokenCounter("issue", "fail");
+        openSockets = metrics.openSockets("server", "auth");
+        rejectedSockets = metrics.rejectedSockets("auth");
+        pausedTimer = metrics.pausedTimer("auth");
+
+        BufferMessageCodec.registerEchoCodecs(vertx);
+        var replyOptions = LocalService.deliveryOptions();
+        vertx.eventBus().<Buffer> localConsumer(AuthService.ADDRESS, message -> message.reply(authenticate(message.body()), replyOptions));
+
+        var options = new NetServerOptions()
+                .setPort(config().getInteger("authPort", DEFAULT_PORT))
+                .setReusePort(config().getBoolean("reusePort", vertx.isNativeTransportEnabled()));
         var netServer = vertx.createNetServer(options);
 
-        netServer.connectHandler(socket ->
-                socket.handler(buffer ->
-                        handleRequest(socket, buffer)));
+        var maxConnections = config().getInteger("serverMaxConnections", ServerConnection.DEFAULT_MAX_CONNECTIONS);
+        var maxInFlight = config().getInteger("serverMaxInFlight", ServerConnection.DEFAULT_MAX_IN_FLIGHT);
+        netServer.connectHandler(socket -> {
+            if (openSockets.incrementAndGet() > maxConnections) {
+                openSockets.decrementAndGet();
+                rejectedSockets.increment();
+                socket.close();
+                return;
+            }
+
+            socket.closeHandler(v -> openSockets.decrementAndGet());
+            var connection = new ServerConnection(socket, maxInFlight, pausedTimer);
+            socket.handler(new FrameParser(frame -> handleRequest(connection, frame), cause -> {
+                LOGGER.warn("Closing connection from {} after error", socket.remoteAddress(), cause);
+                socket.close();
+            }));
+        });
 
         netServer.listen(ar -> {
             if (ar.succeeded()) {
                 LOGGER.debug("Listening for connections on port {}", netServer.actualPort());
+                LocalService.register(vertx, AuthService.ADDRESS);
                 startPromise.complete();
             } else {
                 LOGGER.error("Failed to listen for connections", ar.cause());
@@ -91,4 +136,9 @@ public class AuthServiceVerticle extends AbstractVerticle {
             }
         });
     }
+
+    @Override
+    public void stop() {
+        LocalService.unregister(vertx, AuthService.ADDRESS);
+    }
 }
@@ -0,0 +1,82 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Encoding of the requests to the echo service, and of the multi-payload frames exchanged with it in batching mode.
+ *
+ * Every request payload starts with a type byte, so that batches can be told apart from single requests whatever byte
+ * a token starts with. A single request consists of {@link #SINGLE}, the token and the input. A batch request consists
+ * of {@link #MARKER}, the token, and the items. A batch response payload consists of a status byte and, if the status
+ * is OK, the items. Items are encoded as their number (4 bytes) followed by the length (4 bytes) and bytes of every item.
+ */
+public final class Batch {
+
+    public static final byte SINGLE = 0;
+    public static final byte MARKER = (byte) 0xFF;
+
+    private Batch() {
+    }
+
+    public static boolean isSingle(Buffer payload) {
+        return payload.length() > 0 && payload.getByte(0) == SINGLE;
+    }
+
+    public static boolean isBatch(Buffer payload) {
+        return payload.length() > 0 && payload.getByte(0) == MARKER;
+    }
+
+    public static Buffer single(Buffer token, Buffer input) {
+        return Buffer.buffer(1 + token.length() + input.length()).appendByte(SINGLE).appendBuffer(token).appendBuffer(input);
+    }
+
+    public static Buffer request(Buffer token, List<Buffer> items) {
+        var length = 1 + token.length() + 4 + items.stream().mapToInt(item -> 4 + item.length()).sum();
+        var buffer = Buffer.buffer(length).appendByte(MARKER).appendBuffer(token);
+        return appendItems(buffer, items);
+    }
+
+    public static Buffer appendItems(Buffer buffer, List<Buffer> items) {
+        buffer.appendInt(items.size());
+        for (var item : items) {
+            buffer.appendInt(item.length()).appendBuffer(item);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns views of the items encoded in the given buffer, starting at the given offset.
+     *
+     * @throws IllegalArgumentException if the items don't exactly fill the rest of the buffer
+     */
+    public static List<Buffer> items(Buffer buffer, int offset) {
+        if (buffer.length() < offset + 4) {
+            throw new IllegalArgumentException("Missing number of items");
+        }
+
+        var count = buffer.getInt(offset);
+        if (count < 0 || count > (buffer.length() - offset - 4) / 4) {
+            throw new IllegalArgumentException("Invalid number of items: " + count);
+        }
+
+        var items = new ArrayList<Buffer>(count);
+        var position = offset + 4;
+        for (var i = 0; i < count; ++i) {
+            var length = position + 4 <= buffer.length() ? buffer.getInt(position) : -1;
+            if (length < 0 || length > buffer.length() - position - 4) {
+                throw new IllegalArgumentException("Invalid length of item " + i);
+            }
+            items.add(buffer.slice(position + 4, position + 4 + length));
+            position += 4 + length;
+        }
+
+        if (position != buffer.length()) {
+            throw new IllegalArgumentException("Unexpected bytes after " + count + " items");
+        }
+
+        return items;
+    }
+}
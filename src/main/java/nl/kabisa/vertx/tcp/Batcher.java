@@ -0,0 +1,96 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+/**
+ * Coalesces individual requests into batches.
+ *
+ * A batch is sent as soon as it holds the maximum number of requests, or when the maximum delay has passed since its
+ * first request was added, whichever comes first. With a maximum delay of 0, a batch holds the requests added during
+ * the current event loop iteration. The results of a batch are fanned back out to the individual requests, in order.
+ * Like {@link ConnectionPool}, a batcher must only be used from the event loop of the verticle that owns it.
+ */
+public class Batcher<T, R> {
+
+    public static final int DEFAULT_MAX_SIZE = 1;
+    public static final long DEFAULT_MAX_DELAY = 1;
+
+    private final Vertx vertx;
+    private final int maxSize;
+    private final long maxDelay;
+    private final Function<List<T>, Future<List<R>>> sender;
+
+    private List<T> requests = new ArrayList<>();
+    private List<Promise<R>> promises = new ArrayList<>();
+    private long timerId = -1;
+    private boolean flushScheduled;
+
+    public Batcher(Vertx vertx, int maxSize, long maxDelay, Function<List<T>, Future<List<R>>> sender) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.vertx = vertx;
+        this.maxSize = maxSize;
+        this.maxDelay = maxDelay;
+        this.sender = sender;
+    }
+
+    public Future<R> add(T request) {
+        var promise = Promise.<R>promise();
+        requests.add(request);
+        promises.add(promise);
+
+        if (requests.size() >= maxSize) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            if (maxDelay > 0) {
+                timerId = vertx.setTimer(maxDelay, id -> flush());
+            } else {
+                vertx.runOnContext(v -> {
+                    if (flushScheduled) {
+                        flush();
+                    }
+                });
+            }
+        }
+
+        return promise.future();
+    }
+
+    private void flush() {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+        flushScheduled = false;
+
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        var batch = requests;
+        var batchPromises = promises;
+        requests = new ArrayList<>();
+        promises = new ArrayList<>();
+
+        sender.apply(batch).andThen(asyncResults -> {
+            if (asyncResults.failed()) {
+                batchPromises.forEach(promise -> promise.tryFail(asyncResults.cause()));
+            } else if (asyncResults.result().size() != batchPromises.size()) {
+                batchPromises.forEach(promise -> promise.tryFail("Expected " + batchPromises.size() + " results but got "
+                        + asyncResults.result().size()));
+            } else {
+                for (var i = 0; i < batchPromises.size(); ++i) {
+                    batchPromises.get(i).tryComplete(asyncResults.result().get(i));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.function.Function;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Event bus codec for messages that can be converted to and from a single {@link Buffer}.
+ *
+ * Messages delivered locally are passed on as they are, without copying or converting them. Messages sent over the wire
+ * are encoded as the length of their buffer followed by its bytes.
+ */
+public class BufferMessageCodec<T> implements MessageCodec<T, T> {
+
+    /**
+     * Name of the codec for plain buffers, which, unlike the default one, doesn't copy buffers delivered locally.
+     */
+    public static final String BUFFER = "buffer";
+
+    private static final String LOCAL_MAP = "BUFFER_MESSAGE_CODECS";
+
+    private final String name;
+    private final Function<T, Buffer> toBuffer;
+    private final Function<Buffer, T> fromBuffer;
+
+    public BufferMessageCodec(String name, Function<T, Buffer> toBuffer, Function<Buffer, T> fromBuffer) {
+        this.name = name;
+        this.toBuffer = toBuffer;
+        this.fromBuffer = fromBuffer;
+    }
+
+    /**
+     * Registers the codecs for {@link EchoRequest} and {@link EchoResponse} as default codecs, and the {@value #BUFFER}
+     * codec, unless this has already been done for the given Vert.x instance.
+     */
+    public static void registerEchoCodecs(Vertx vertx) {
+        vertx.sharedData().<String, Boolean> getLocalMap(LOCAL_MAP).computeIfAbsent(LOCAL_MAP, name -> {
+            var eventBus = vertx.eventBus();
+            eventBus.registerDefaultCodec(EchoRequest.class,
+                    new BufferMessageCodec<>("echo-request", EchoRequest::toBuffer, EchoRequest::fromBuffer));
+            eventBus.registerDefaultCodec(EchoResponse.class,
+                    new BufferMessageCodec<>("echo-response", EchoResponse::body, EchoResponse::new));
+            eventBus.registerCodec(new BufferMessageCodec<Buffer>(BUFFER, Function.identity(), Function.identity()));
+            return true;
+        });
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T message) {
+        var body = toBuffer.apply(message);
+        buffer.appendInt(body.length()).appendBuffer(body);
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+        var length = buffer.getInt(pos);
+        return fromBuffer.apply(buffer.getBuffer(pos + 4, pos + 4 + length));
+    }
+
+    @Override
+    public T transform(T message) {
+        return message;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,89 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.function.Supplier;
+
+import io.vertx.core.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops sending requests to a backend that keeps failing.
+ *
+ * The breaker opens after a number of consecutive failures, and then rejects every request until the reset timeout has
+ * passed. After that it is half-open: a single trial request is let through, which closes the breaker again if it
+ * succeeds and reopens it if it fails. Requests that time out because the caller's deadline ran out don't count either
+ * way.
+ * Like {@link ConnectionPool}, a circuit breaker must only be used from the event loop of the verticle that owns it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_RESET_TIMEOUT = 5_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String name;
+    private final int failureThreshold;
+    private final long resetTimeout;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long resetTimeout) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeout = resetTimeout;
+    }
+
+    public <T> Future<T> execute(Supplier<Future<T>> operation) {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= resetTimeout) {
+            state = State.HALF_OPEN;
+        }
+
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            return Future.failedFuture(new RejectedException("Circuit breaker for " + name + " is open"));
+        }
+
+        var trial = state == State.HALF_OPEN;
+        trialInFlight = trial;
+        return operation.get().andThen(asyncResult -> {
+            if (trial) {
+                trialInFlight = false;
+            }
+            if (asyncResult.succeeded()) {
+                onSuccess();
+            } else if (!(asyncResult.cause() instanceof DeadlineExceededException e && e.callerDeadline())) {
+                onFailure(trial);
+            }
+        });
+    }
+
+    public State state() {
+        return state;
+    }
+
+    private void onSuccess() {
+        if (state != State.CLOSED) {
+            LOGGER.info("Closing circuit breaker for {}", name);
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    private void onFailure(boolean trial) {
+        ++failures;
+        if (trial || (state == State.CLOSED && failures >= failureThreshold)) {
+            LOGGER.warn("Opening circuit breaker for {} after {} consecutive failures", name, failures);
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.vertx.core.Future;
+
+/**
+ * Limits the number of requests in flight to a backend, adapting the limit to the latency the backend shows.
+ *
+ * The limit follows additive increase, multiplicative decrease: it grows by one for every fast, successful response
+ * while at least half of the limit is in use, and shrinks by a fixed ratio whenever a request takes longer than the
+ * latency threshold or times out, unless the caller's deadline rather than the backend's timeout ran out. Requests
+ * beyond the limit are rejected immediately instead of queuing.
+ * Rejections by an inner {@link CircuitBreaker} neither grow nor shrink the limit.
+ * Like {@link ConnectionPool}, a limiter must only be used from the event loop of the verticle that owns it.
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final long DEFAULT_LATENCY_THRESHOLD = 250;
+
+    private static final int MIN_LIMIT = 1;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int maxLimit;
+    private final long latencyThreshold;
+
+    private double limit;
+    private int inFlight;
+
+    public ConcurrencyLimiter(String name, int initialLimit, int maxLimit, long latencyThreshold) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+    }
+
+    public <T> Future<T> execute(Supplier<Future<T>> operation) {
+        if (inFlight >= limit()) {
+            return Future.failedFuture(new RejectedException("Concurrency limit for " + name + " reached"));
+        }
+
+        ++inFlight;
+        var startTime = System.nanoTime();
+        return operation.get().andThen(asyncResult -> {
+            var latency = System.nanoTime() - startTime;
+            if (asyncResult.failed() && asyncResult.cause() instanceof RejectedException) {
+                --inFlight;
+                return;
+            }
+
+            if ((asyncResult.cause() instanceof DeadlineExceededException e && !e.callerDeadline()) || latency > latencyThreshold) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            } else if (asyncResult.succeeded() && inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            --inFlight;
+        });
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,248 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of long-lived, pipelined connections to a single TCP backend.
+ *
+ * A pool is owned by a single verticle instance and must only be used from that verticle's event loop.
+ * Requests go to the least loaded connection that has room for another request in flight. A new connection is only
+ * opened once every open connection is full, so a steady request stream keeps reusing a small set of warm sockets
+ * while the rest of the pool ages out and is evicted.
+ * The timeout of a request covers both the time spent waiting for a connection and the time spent waiting for the
+ * response; a request that times out while waiting is removed from the wait queue. When a new connection can't be
+ * opened, waiting requests go to open connections that have room for them, and the rest fail right away.
+ * A connection on which a number of requests in a row time out is assumed to be broken, and is closed. Requests that
+ * are still in flight on it fail, and later requests go to other or new connections.
+ */
+public class ConnectionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final Vertx vertx;
+    private final NetClient netClient;
+    private final int port;
+    private final String host;
+    private final Timer connectTimer;
+    private final AtomicInteger openSockets;
+
+    private final List<FramedConnection> connections = new ArrayList<>();
+    private final Deque<WaitingRequest> waitingRequests = new ArrayDeque<>();
+
+    private ConnectionPoolOptions options;
+    private int connecting;
+    private long evictionTimerId = -1;
+    private boolean closed;
+
+    public ConnectionPool(Vertx vertx, NetClient netClient, int port, String host, ConnectionPoolOptions options) {
+        this.vertx = vertx;
+        this.netClient = netClient;
+        this.port = port;
+        this.host = host;
+        this.options = options;
+
+        var metrics = PipelineMetrics.shared(vertx);
+        this.connectTimer = metrics.stageTimer(options.getName() + ".connect");
+        this.openSockets = metrics.openSockets("client", options.getName());
+
+        if (options.getEvictionInterval() > 0) {
+            evictionTimerId = vertx.setPeriodic(options.getEvictionInterval(), id -> evictIdleConnections());
+        }
+    }
+
+    /**
+     * Replaces the limits of the pool. The name and eviction interval are only read when the pool is created.
+     * Connections and waiting requests beyond new, lower limits are not closed or failed, but allowed to finish.
+     */
+    public void setOptions(ConnectionPoolOptions options) {
+        this.options = options;
+    }
+
+    public Future<Buffer> request(Buffer payload) {
+        return request(payload, 0);
+    }
+
+    /**
+     * Sends a request, failing it with a {@link DeadlineExceededException} if no response arrives within the given
+     * number of milliseconds. A timeout of 0 means the request never times out.
+     */
+    public Future<Buffer> request(Buffer payload, long timeout) {
+        if (closed) {
+            return Future.failedFuture("Connection pool is closed");
+        }
+
+        var connection = availableConnection();
+        if (connection != null) {
+            return send(connection, payload, timeout);
+        }
+
+        if (waitingRequests.size() >= options.getMaxWaitQueueSize()) {
+            return Future.failedFuture("Connection pool for " + host + ":" + port + " is exhausted");
+        }
+
+        var promise = Promise.<Buffer>promise();
+        var waitingRequest = new WaitingRequest(payload, promise, timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+        if (timeout > 0) {
+            waitingRequest.timerId = vertx.setTimer(timeout, id -> {
+                if (waitingRequests.remove(waitingRequest)) {
+                    promise.fail(new DeadlineExceededException("No connection to " + host + ":" + port + " in time"));
+                }
+            });
+        }
+        waitingRequests.addLast(waitingRequest);
+        if (connecting == 0 && size() < options.getMaxSize()) {
+            connect();
+        }
+
+        return promise.future();
+    }
+
+    public int size() {
+        return connections.size() + connecting;
+    }
+
+    public int inFlight() {
+        return connections.stream().mapToInt(FramedConnection::inFlight).sum();
+    }
+
+    public void close() {
+        closed = true;
+        if (evictionTimerId >= 0) {
+            vertx.cancelTimer(evictionTimerId);
+        }
+
+        waitingRequests.forEach(waitingRequest -> {
+            cancelTimer(waitingRequest);
+            waitingRequest.promise.tryFail("Connection pool is closed");
+        });
+        waitingRequests.clear();
+        List.copyOf(connections).forEach(FramedConnection::close);
+    }
+
+    private FramedConnection availableConnection() {
+        FramedConnection leastLoaded = null;
+        for (var connection : connections) {
+            if (connection.inFlight() < options.getMaxInFlight()
+                    && (leastLoaded == null || connection.inFlight() < leastLoaded.inFlight())) {
+                leastLoaded = connection;
+            }
+        }
+        return leastLoaded;
+    }
+
+    private void connect() {
+        ++connecting;
+
+        PipelineMetrics.time(connectTimer, () -> netClient.connect(port, host)).andThen(asyncSocket -> {
+            --connecting;
+            if (asyncSocket.succeeded()) {
+                openSockets.incrementAndGet();
+                var connection = new FramedConnection(vertx, asyncSocket.result());
+                connections.add(connection);
+                connection.responseHandler(v -> dispatchWaitingRequests());
+                connection.closeHandler(v -> onClose(connection));
+                if (closed) {
+                    connection.close();
+                } else {
+                    dispatchWaitingRequests();
+                }
+            } else {
+                LOGGER.error("Failed to connect to {}:{}", host, port, asyncSocket.cause());
+                if (!dispatchToOpenConnections() && connecting == 0) {
+                    waitingRequests.forEach(waitingRequest -> {
+                        cancelTimer(waitingRequest);
+                        waitingRequest.promise.tryFail(asyncSocket.cause());
+                    });
+                    waitingRequests.clear();
+                }
+            }
+        });
+    }
+
+    private void dispatchWaitingRequests() {
+        if (!dispatchToOpenConnections() && connecting == 0 && size() < options.getMaxSize()) {
+            connect();
+        }
+    }
+
+    /**
+     * Sends waiting requests over open connections that have room for them, and returns whether none are left waiting.
+     */
+    private boolean dispatchToOpenConnections() {
+        while (!waitingRequests.isEmpty()) {
+            var connection = availableConnection();
+            if (connection == null) {
+                return false;
+            }
+
+            var waitingRequest = waitingRequests.pollFirst();
+            cancelTimer(waitingRequest);
+            var timeout = waitingRequest.deadline > 0 ? Math.max(1, waitingRequest.deadline - System.currentTimeMillis()) : 0;
+            send(connection, waitingRequest.payload, timeout).onComplete(waitingRequest.promise);
+        }
+        return true;
+    }
+
+    private Future<Buffer> send(FramedConnection connection, Buffer payload, long timeout) {
+        return connection.request(payload, timeout).andThen(asyncResponse -> {
+            var maxConsecutiveTimeouts = options.getMaxConsecutiveTimeouts();
+            if (maxConsecutiveTimeouts > 0 && connection.consecutiveTimeouts() >= maxConsecutiveTimeouts
+                    && connections.remove(connection)) {
+                LOGGER.warn("Closing connection to {}:{} after {} consecutive timeouts", host, port, maxConsecutiveTimeouts);
+                connection.close();
+            }
+        });
+    }
+
+    private void cancelTimer(WaitingRequest waitingRequest) {
+        if (waitingRequest.timerId >= 0) {
+            vertx.cancelTimer(waitingRequest.timerId);
+        }
+    }
+
+    private void onClose(FramedConnection connection) {
+        connections.remove(connection);
+        openSockets.decrementAndGet();
+
+        if (!closed) {
+            dispatchWaitingRequests();
+        }
+    }
+
+    private void evictIdleConnections() {
+        var evictBefore = System.currentTimeMillis() - options.getIdleTimeout();
+        for (var connection : List.copyOf(connections)) {
+            if (connection.inFlight() == 0 && connection.idleSince() <= evictBefore) {
+                connection.close();
+            }
+        }
+    }
+
+    private static class WaitingRequest {
+
+        private final Buffer payload;
+        private final Promise<Buffer> promise;
+        private final long deadline;
+        private long timerId = -1;
+
+        private WaitingRequest(Buffer payload, Promise<Buffer> promise, long deadline) {
+            this.payload = payload;
+            this.promise = promise;
+            this.deadline = deadline;
+        }
+    }
+}
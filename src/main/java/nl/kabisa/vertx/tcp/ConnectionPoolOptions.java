@@ -0,0 +1,96 @@
+package nl.kabisa.vertx.tcp;
+
+public class ConnectionPoolOptions {
+
+    public static final String DEFAULT_NAME = "default";
+    public static final int DEFAULT_MAX_SIZE = 8;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final int DEFAULT_MAX_WAIT_QUEUE_SIZE = 1024;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60_000;
+    public static final long DEFAULT_EVICTION_INTERVAL = 5_000;
+    public static final int DEFAULT_MAX_CONSECUTIVE_TIMEOUTS = 3;
+
+    private String name = DEFAULT_NAME;
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int maxWaitQueueSize = DEFAULT_MAX_WAIT_QUEUE_SIZE;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private long evictionInterval = DEFAULT_EVICTION_INTERVAL;
+    private int maxConsecutiveTimeouts = DEFAULT_MAX_CONSECUTIVE_TIMEOUTS;
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the backend, which is used to tag the metrics of the pool.
+     */
+    public ConnectionPoolOptions setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public ConnectionPoolOptions setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public ConnectionPoolOptions setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in flight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public int getMaxWaitQueueSize() {
+        return maxWaitQueueSize;
+    }
+
+    public ConnectionPoolOptions setMaxWaitQueueSize(int maxWaitQueueSize) {
+        this.maxWaitQueueSize = maxWaitQueueSize;
+        return this;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public ConnectionPoolOptions setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public ConnectionPoolOptions setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+        return this;
+    }
+
+    public int getMaxConsecutiveTimeouts() {
+        return maxConsecutiveTimeouts;
+    }
+
+    /**
+     * Sets the number of requests in a row that may time out on a connection before it is closed, or 0 to never close
+     * connections because of timeouts.
+     */
+    public ConnectionPoolOptions setMaxConsecutiveTimeouts(int maxConsecutiveTimeouts) {
+        this.maxConsecutiveTimeouts = maxConsecutiveTimeouts;
+        return this;
+    }
+}
@@ -0,0 +1,27 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.VertxException;
+
+public class DeadlineExceededException extends VertxException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean callerDeadline;
+
+    public DeadlineExceededException(String message) {
+        this(message, false);
+    }
+
+    public DeadlineExceededException(String message, boolean callerDeadline) {
+        super(message, true);
+        this.callerDeadline = callerDeadline;
+    }
+
+    /**
+     * Returns whether the deadline of the caller ran out before the timeout of the stage itself, in which case the
+     * backend isn't to blame.
+     */
+    public boolean callerDeadline() {
+        return callerDeadline;
+    }
+}
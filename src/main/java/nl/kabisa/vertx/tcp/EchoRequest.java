@@ -0,0 +1,23 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Request sent on the event bus to {@link TcpClientVerticle#REQUEST_ADDRESS}, holding the UTF-8 encoded text to echo.
+ *
+ * The deadline is the time, in milliseconds since the epoch, by which a reply is needed; 0 means no deadline was set.
+ */
+public record EchoRequest(Buffer body, long deadline) {
+
+    public EchoRequest(Buffer body) {
+        this(body, 0);
+    }
+
+    public static EchoRequest fromBuffer(Buffer buffer) {
+        return new EchoRequest(buffer.getBuffer(8, buffer.length()), buffer.getLong(0));
+    }
+
+    public Buffer toBuffer() {
+        return Buffer.buffer(8 + body.length()).appendLong(deadline).appendBuffer(body);
+    }
+}
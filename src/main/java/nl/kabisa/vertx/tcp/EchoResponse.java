@@ -0,0 +1,9 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Reply to an {@link EchoRequest}, holding the UTF-8 encoded text returned by the echo service.
+ */
+public record EchoResponse(Buffer body) {
+}
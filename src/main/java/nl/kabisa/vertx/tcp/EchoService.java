@@ -0,0 +1,26 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Upper-cases the inputs of clients presenting a valid token.
+ *
+ * Requests and responses are the payloads of the frames the echo service exchanges over TCP: a request is encoded by
+ * {@link Batch#single(Buffer, Buffer)} or {@link Batch#request(Buffer, java.util.List)}, and the response is a status
+ * byte followed by the output. Implementations call the service over TCP ({@link TcpService}) or within the same Vert.x
+ * instance ({@link LocalService}).
+ */
+public interface EchoService {
+
+    /**
+     * Local event bus address the echo service answers on when it is deployed in the same Vert.x instance.
+     */
+    String ADDRESS = "echo.service";
+
+    /**
+     * Sends a request, failing with a {@link DeadlineExceededException} if no response arrives within the given number
+     * of milliseconds.
+     */
+    Future<Buffer> echo(Buffer request, long timeout);
+}
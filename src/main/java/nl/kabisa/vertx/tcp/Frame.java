@@ -0,0 +1,22 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Unit of transfer on the connections between the TCP client and the auth and echo services.
+ *
+ * On the wire, a frame consists of the length of its payload (4 bytes), a correlation id (4 bytes) and the payload
+ * itself. Responses carry the id of the request they answer, so that many requests can be pipelined over a single
+ * connection and answered in any order.
+ */
+public record Frame(int id, Buffer payload) {
+
+    public static final int HEADER_LENGTH = 8;
+
+    public Buffer toBuffer() {
+        return Buffer.buffer(HEADER_LENGTH + payload.length())
+                .appendInt(payload.length())
+                .appendInt(id)
+                .appendBuffer(payload);
+    }
+}
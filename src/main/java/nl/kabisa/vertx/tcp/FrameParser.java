@@ -0,0 +1,65 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.Handler;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.parsetools.RecordParser;
+
+/**
+ * Reassembles {@link Frame}s from the buffers received on a socket, regardless of how TCP splits or coalesces them.
+ */
+public class FrameParser implements Handler<Buffer> {
+
+    public static final int DEFAULT_MAX_PAYLOAD_LENGTH = 16 * 1024 * 1024;
+
+    private final RecordParser recordParser = RecordParser.newFixed(Frame.HEADER_LENGTH);
+    private final int maxPayloadLength;
+    private final Handler<Frame> frameHandler;
+    private final Handler<Throwable> exceptionHandler;
+
+    private boolean expectingHeader = true;
+    private int id;
+    private boolean failed;
+
+    public FrameParser(Handler<Frame> frameHandler, Handler<Throwable> exceptionHandler) {
+        this(DEFAULT_MAX_PAYLOAD_LENGTH, frameHandler, exceptionHandler);
+    }
+
+    public FrameParser(int maxPayloadLength, Handler<Frame> frameHandler, Handler<Throwable> exceptionHandler) {
+        this.maxPayloadLength = maxPayloadLength;
+        this.frameHandler = frameHandler;
+        this.exceptionHandler = exceptionHandler;
+
+        recordParser.handler(this::handleRecord);
+    }
+
+    @Override
+    public void handle(Buffer buffer) {
+        if (!failed) {
+            recordParser.handle(buffer);
+        }
+    }
+
+    private void handleRecord(Buffer record) {
+        if (!expectingHeader) {
+            expectingHeader = true;
+            recordParser.fixedSizeMode(Frame.HEADER_LENGTH);
+            frameHandler.handle(new Frame(id, record));
+            return;
+        }
+
+        var payloadLength = record.getInt(0);
+        id = record.getInt(4);
+
+        if (payloadLength < 0 || payloadLength > maxPayloadLength) {
+            failed = true;
+            recordParser.pause();
+            exceptionHandler.handle(new VertxException("Invalid frame length " + payloadLength, true));
+        } else if (payloadLength == 0) {
+            frameHandler.handle(new Frame(id, Buffer.buffer()));
+        } else {
+            expectingHeader = false;
+            recordParser.fixedSizeMode(payloadLength);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client side of a connection speaking the {@link Frame} protocol.
+ *
+ * Requests are written as soon as they are made and their responses are matched by correlation id, so any number of
+ * requests can be in flight on the same connection. A request that isn't answered within its timeout fails and no longer
+ * counts as in flight; a response arriving after that is ignored.
+ */
+public class FramedConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FramedConnection.class);
+
+    private final Vertx vertx;
+    private final NetSocket socket;
+    private final Map<Integer, PendingRequest> pendingRequests = new HashMap<>();
+
+    private Handler<Void> responseHandler = v -> {};
+    private Handler<Void> closeHandler = v -> {};
+    private int nextId;
+    private int consecutiveTimeouts;
+    private long idleSince = System.currentTimeMillis();
+    private boolean closed;
+
+    public FramedConnection(Vertx vertx, NetSocket socket) {
+        this.vertx = vertx;
+        this.socket = socket;
+
+        socket.handler(new FrameParser(this::handleFrame, this::handleException));
+        socket.exceptionHandler(this::handleException);
+        socket.closeHandler(v -> handleClose());
+    }
+
+    public Future<Buffer> request(Buffer payload) {
+        return request(payload, 0);
+    }
+
+    /**
+     * Sends a request, failing it with a {@link DeadlineExceededException} if no response arrives within the given
+     * number of milliseconds. A timeout of 0 means the request waits as long as the connection stays open.
+     */
+    public Future<Buffer> request(Buffer payload, long timeout) {
+        if (closed) {
+            return Future.failedFuture("Connection is closed");
+        }
+
+        var id = nextId++;
+        var promise = Promise.<Buffer>promise();
+        var timerId = timeout > 0 ? vertx.setTimer(timeout, tid -> expire(id)) : -1;
+        pendingRequests.put(id, new PendingRequest(promise, timerId));
+        socket.write(new Frame(id, payload).toBuffer());
+
+        return promise.future();
+    }
+
+    public int inFlight() {
+        return pendingRequests.size();
+    }
+
+    public long idleSince() {
+        return idleSince;
+    }
+
+    /**
+     * Returns the number of requests that timed out since the last response that arrived in time.
+     */
+    public int consecutiveTimeouts() {
+        return consecutiveTimeouts;
+    }
+
+    public FramedConnection responseHandler(Handler<Void> responseHandler) {
+        this.responseHandler = responseHandler;
+        return this;
+    }
+
+    public FramedConnection closeHandler(Handler<Void> closeHandler) {
+        this.closeHandler = closeHandler;
+        return this;
+    }
+
+    public void close() {
+        socket.close();
+    }
+
+    private void handleFrame(Frame frame) {
+        var pendingRequest = remove(frame.id());
+        if (pendingRequest == null) {
+            LOGGER.debug("Received response for unknown or expired request {} from {}", frame.id(), socket.remoteAddress());
+            return;
+        }
+
+        if (pendingRequest.timerId >= 0) {
+            vertx.cancelTimer(pendingRequest.timerId);
+        }
+        consecutiveTimeouts = 0;
+        pendingRequest.promise.complete(frame.payload());
+        responseHandler.handle(null);
+    }
+
+    private void expire(int id) {
+        var pendingRequest = remove(id);
+        if (pendingRequest != null) {
+            ++consecutiveTimeouts;
+            pendingRequest.promise.fail(new DeadlineExceededException("No response from " + socket.remoteAddress() + " in time"));
+            responseHandler.handle(null);
+        }
+    }
+
+    private PendingRequest remove(int id) {
+        var pendingRequest = pendingRequests.remove(id);
+        if (pendingRequest != null && pendingRequests.isEmpty()) {
+            idleSince = System.currentTimeMillis();
+        }
+        return pendingRequest;
+    }
+
+    private void handleException(Throwable cause) {
+        LOGGER.warn("Closing connection to {} after error", socket.remoteAddress(), cause);
+        socket.close();
+    }
+
+    private void handleClose() {
+        closed = true;
+        pendingRequests.values().forEach(pendingRequest -> {
+            if (pendingRequest.timerId >= 0) {
+                vertx.cancelTimer(pendingRequest.timerId);
+            }
+            pendingRequest.promise.tryFail("Connection closed");
+        });
+        pendingRequests.clear();
+        closeHandler.handle(null);
+    }
+
+    private record PendingRequest(Promise<Buffer> promise, long timerId) {
+    }
+}
@@ -0,0 +1,75 @@
+package nl.kabisa.vertx.tcp;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Generates self-contained tokens, which any service knowing the secret can verify without the {@link TokenStore}.
+ *
+ * A token consists of its expiration time and 8 random bytes, followed by the first 16 bytes of their HMAC-SHA256.
+ * Unlike stored tokens, these tokens can't be revoked before they expire.
+ */
+public class HmacTokenGenerator implements TokenGenerator {
+
+    public static final int LENGTH = 32;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int CONTENT_LENGTH = 16;
+    private static final int SIGNATURE_LENGTH = LENGTH - CONTENT_LENGTH;
+
+    private final ThreadLocal<Mac> mac;
+    private final long ttl;
+
+    public HmacTokenGenerator(byte[] secret, long ttl) {
+        var key = new SecretKeySpec(secret, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                var instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to create " + ALGORITHM, e);
+            }
+        });
+        this.ttl = ttl;
+    }
+
+    @Override
+    public int length() {
+        return LENGTH;
+    }
+
+    @Override
+    public Buffer generate() {
+        var nonce = new byte[8];
+        RandomTokenGenerator.nextBytes(nonce);
+
+        var content = Buffer.buffer(LENGTH)
+                .appendLong(System.currentTimeMillis() + ttl)
+                .appendBytes(nonce)
+                .getBytes();
+        return Buffer.buffer(content).appendBytes(sign(content));
+    }
+
+    /**
+     * Returns whether the given token was signed with this generator's secret and hasn't expired yet.
+     */
+    public boolean verify(Buffer token) {
+        if (token.length() != LENGTH || token.getLong(0) <= System.currentTimeMillis()) {
+            return false;
+        }
+
+        var signature = token.getBytes(CONTENT_LENGTH, LENGTH);
+        return MessageDigest.isEqual(sign(token.getBytes(0, CONTENT_LENGTH)), signature);
+    }
+
+    private byte[] sign(byte[] content) {
+        return Arrays.copyOf(mac.get().doFinal(content), SIGNATURE_LENGTH);
+    }
+}
@@ -0,0 +1,82 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.shareddata.LocalMap;
+
+/**
+ * Calls the auth or echo service deployed in the same Vert.x instance, over its local event bus address.
+ *
+ * Requests and responses are passed on as they are, without framing, copying or sockets. Since the service verticles
+ * answer on their own event loops, their state still isn't shared between threads. Services announce that they are
+ * deployed with {@link #register(Vertx, String)}, so that clients can check {@link #isDeployed()} for every request.
+ */
+public class LocalService implements AuthService, EchoService {
+
+    private static final String LOCAL_MAP = "LOCAL_SERVICES";
+
+    private final EventBus eventBus;
+    private final String address;
+    private final LocalMap<String, Integer> deployedServices;
+
+    public LocalService(Vertx vertx, String address) {
+        this.eventBus = vertx.eventBus();
+        this.address = address;
+        this.deployedServices = vertx.sharedData().getLocalMap(LOCAL_MAP);
+    }
+
+    /**
+     * Counts a verticle answering on the given address. Every verticle instance has to call this when it starts, and
+     * {@link #unregister(Vertx, String)} when it stops.
+     */
+    public static void register(Vertx vertx, String address) {
+        vertx.sharedData().<String, Integer> getLocalMap(LOCAL_MAP).merge(address, 1, Integer::sum);
+    }
+
+    public static void unregister(Vertx vertx, String address) {
+        vertx.sharedData().<String, Integer> getLocalMap(LOCAL_MAP).computeIfPresent(address, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Returns the options for requests to and responses from local services, which deliver buffers without copying them.
+     */
+    static DeliveryOptions deliveryOptions() {
+        return new DeliveryOptions().setCodecName(BufferMessageCodec.BUFFER).setLocalOnly(true);
+    }
+
+    public boolean isDeployed() {
+        return deployedServices.containsKey(address);
+    }
+
+    @Override
+    public Future<Buffer> authenticate(Buffer credentials, long timeout) {
+        return request(credentials, timeout);
+    }
+
+    @Override
+    public Future<Buffer> echo(Buffer request, long timeout) {
+        return request(request, timeout);
+    }
+
+    private Future<Buffer> request(Buffer payload, long timeout) {
+        var options = deliveryOptions();
+        if (timeout > 0) {
+            options.setSendTimeout(timeout);
+        }
+
+        return eventBus.<Buffer> request(address, payload, options)
+                .map(Message::body)
+                .recover(cause -> {
+                    if (cause instanceof ReplyException replyException && replyException.failureType() == ReplyFailure.TIMEOUT) {
+                        return Future.failedFuture(new DeadlineExceededException("No response from " + address + " within " + timeout + " ms"));
+                    }
+                    return Future.failedFuture(cause);
+                });
+    }
+}
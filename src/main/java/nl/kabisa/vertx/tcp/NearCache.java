@@ -0,0 +1,58 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Small cache of tokens that were recently found to be valid in the {@link TokenStore}.
+ *
+ * Entries live for a short time only and never outlive the token itself. Tokens that are invalidated early, because
+ * they were removed from or evicted by the store, have to be dropped using {@link #invalidate(UUID)}.
+ * A near cache is owned by a single verticle instance and must only be used from that verticle's event loop, which
+ * is what allows validation of hot tokens without any locking.
+ */
+public class NearCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_TTL = 5_000;
+
+    private final long ttl;
+    private final Map<UUID, Long> validUntil;
+
+    public NearCache(int capacity, long ttl) {
+        this.ttl = ttl;
+        this.validUntil = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public boolean contains(UUID token) {
+        var until = validUntil.get(token);
+        if (until == null) {
+            return false;
+        }
+
+        if (until <= System.currentTimeMillis()) {
+            validUntil.remove(token);
+            return false;
+        }
+
+        return true;
+    }
+
+    public void put(UUID token, long expirationTime) {
+        validUntil.put(token, Math.min(System.currentTimeMillis() + ttl, expirationTime));
+    }
+
+    public void invalidate(UUID token) {
+        validUntil.remove(token);
+    }
+
+    public int size() {
+        return validUntil.size();
+    }
+}
@@ -0,0 +1,43 @@
+package nl.kabisa.vertx.tcp;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Generates tokens of 16 random bytes, which can be stored in the {@link TokenStore} as they are.
+ *
+ * Every thread has its own DRBG, seeded once, rather than sharing the synchronized generator behind
+ * {@link java.util.UUID#randomUUID()} with all other event loops.
+ */
+public class RandomTokenGenerator implements TokenGenerator {
+
+    public static final int LENGTH = 16;
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(RandomTokenGenerator::newRandom);
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    static void nextBytes(byte[] bytes) {
+        RANDOM.get().nextBytes(bytes);
+    }
+
+    @Override
+    public int length() {
+        return LENGTH;
+    }
+
+    @Override
+    public Buffer generate() {
+        var bytes = new byte[LENGTH];
+        nextBytes(bytes);
+        return Buffer.buffer(bytes);
+    }
+}
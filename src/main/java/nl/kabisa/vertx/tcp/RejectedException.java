@@ -0,0 +1,12 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.VertxException;
+
+public class RejectedException extends VertxException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RejectedException(String message) {
+        super(message, true);
+    }
+}
@@ -1,64 +1,156 @@
 package nl.kabisa.vertx.tcp;
 
-import static nl.kabisa.vertx.tcp.AuthServiceVerticle.AUTHENTICATED_CLIENTS_MAP;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import io.vertx.core.Promise;
 
-import com.google.common.primitives.Bytes;
-
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.net.NetServerOptions;
-import io.vertx.core.net.NetSocket;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ScreamingEchoServiceVerticle extends AbstractVerticle {
 
+    public static final int DEFAULT_PORT = 3002;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ScreamingEchoServiceVerticle.class);
 
     private static final Buffer NOK = Buffer.buffer(new byte[] { 0 });
-    private static final byte[] OK = { 1 };
-    private static final Buffer FAILURE = Buffer.buffer(new byte[] { 0 });
-
-    private Future<Boolean> validateToken(String token) {
-        var promise = Promise.<Boolean>promise();
-
-        vertx.sharedData().<String, Boolean> getAsyncMap(AUTHENTICATED_CLIENTS_MAP, asyncMap -> {
-            if (asyncMap.succeeded()) {
-                var map = asyncMap.result();
-                map.get(token, asyncAuthenticated -> {
-                    if (asyncAuthenticated.succeeded()) {
-                        promise.complete(asyncAuthenticated.result());
-                    } else {
-                        LOGGER.error("Unable to get value for {} from map {}", token, AUTHENTICATED_CLIENTS_MAP, asyncAuthenticated.cause());
-                        promise.fail(asyncAuthenticated.cause());
-                    }
-                });
+    private static final Buffer BUSY = Buffer.buffer(new byte[] { 2 });
+    private static final byte OK = 1;
+
+    private static final int DEFAULT_OFFLOAD_THRESHOLD = 64 * 1024;
+    private static final int DEFAULT_OFFLOAD_POOL_SIZE = 2;
+    private static final int DEFAULT_OFFLOAD_MAX_QUEUE_SIZE = 64;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String OFFLOAD_POOL = "echo-offload";
+
+    private TokenGenerator tokenGenerator;
+    private int tokenLength;
+    private TokenStore tokenStore;
+    private NearCache nearCache;
+    private Counter validCounter;
+    private Counter invalidCounter;
+    private AtomicInteger openSockets;
+    private Counter rejectedSockets;
+    private Timer pausedTimer;
+    private WorkerExecutor offloadExecutor;
+    private int offloadThreshold;
+    private int offloadMaxQueueSize;
+    private AtomicInteger offloadQueue;
+    private Timer offloadTimer;
+
+    private boolean validateToken(Buffer buffer) {
+        if (buffer.length() < tokenLength) {
+            return false;
+        }
+
+        if (tokenGenerator instanceof HmacTokenGenerator hmacTokenGenerator) {
+            return hmacTokenGenerator.verify(buffer.slice(0, tokenLength));
+        }
+
+        var token = TokenStore.decode(buffer);
+
+        if (nearCache.contains(token)) {
+            return true;
+        }
+
+        var expirationTime = tokenStore.expirationTime(token);
+        if (expirationTime == 0) {
+            return false;
+        }
+
+        nearCache.put(token, expirationTime);
+        return true;
+    }
+
+    private Future<Buffer> batchResponse(Frame frame) {
+        var buffer = frame.payload().slice(1, frame.payload().length());
+        if (!validateToken(buffer)) {
+            invalidCounter.increment();
+            return Future.succeededFuture(new Frame(frame.id(), NOK).toBuffer());
+        }
+
+        List<Buffer> items;
+        try {
+            items = Batch.items(buffer, tokenLength);
+        } catch (IllegalArgumentException e) {
+            return Future.failedFuture(e);
+        }
+
+        validCounter.increment();
+        return response(frame, () -> UpperCase.batchFrame(frame.id(), OK, items));
+    }
+
+    /**
+     * Returns the response created by the given supplier. Responses to large requests are created on the worker pool,
+     * so that they don't hold up the other connections on the event loop. When too many of those are queued, the
+     * request is answered with {@code BUSY} instead.
+     */
+    private Future<Buffer> response(Frame frame, Supplier<Buffer> response) {
+        if (frame.payload().length() < offloadThreshold) {
+            return Future.succeededFuture(response.get());
+        }
+
+        if (offloadQueue.incrementAndGet() > offloadMaxQueueSize) {
+            offloadQueue.decrementAndGet();
+            return Future.succeededFuture(new Frame(frame.id(), BUSY).toBuffer());
+        }
+
+        return PipelineMetrics.time(offloadTimer, () -> offloadExecutor.executeBlocking(response::get, false))
+                .andThen(asyncResponse -> offloadQueue.decrementAndGet());
+    }
+
+    /**
+     * Returns the frame answering the given request, whether it arrived over TCP or on the local address.
+     */
+    private Future<Buffer> respond(Frame frame) {
+        var buffer = frame.payload();
+        if (Batch.isBatch(buffer)) {
+            return batchResponse(frame);
+        }
+
+        if (Batch.isSingle(buffer) && validateToken(buffer.slice(1, buffer.length()))) {
+            validCounter.increment();
+            return response(frame, () -> UpperCase.chunkedFrame(frame.id(), OK, buffer, 1 + tokenLength, CHUNK_SIZE));
+        } else {
+            invalidCounter.increment();
+            return Future.succeededFuture(new Frame(frame.id(), NOK).toBuffer());
+        }
+    }
+
+    private void handleRequest(ServerConnection connection, Frame frame) {
+        connection.received();
+        respond(frame).andThen(asyncResponse -> {
+            if (asyncResponse.succeeded()) {
+                connection.write(asyncResponse.result());
             } else {
-                LOGGER.error("Unable to get map {}", AUTHENTICATED_CLIENTS_MAP, asyncMap.cause());
-                promise.fail(asyncMap.cause());
+                LOGGER.warn("Closing connection from {} after failing to respond", connection.socket().remoteAddress(), asyncResponse.cause());
+                connection.socket().close();
             }
         });
-
-        return promise.future();
     }
 
-    private void handleRequest(NetSocket socket, Buffer buffer) {
-        LOGGER.info("Received buffer: {}", buffer);
-
-        var id = buffer.getString(0, 36);
-        validateToken(id).andThen(asyncValidationResult -> {
-            if (asyncValidationResult.succeeded()) {
-                var isValid = asyncValidationResult.result();
-                if (Boolean.TRUE.equals(isValid)) {
-                    socket.write(Buffer.buffer(Bytes.concat(OK, buffer.getString(36, buffer.length()).toUpperCase().getBytes())));
-                } else {
-                    socket.write(NOK);
-                }
+    /**
+     * Answers with the payload of the response frame only, as a slice that shares its bytes.
+     */
+    private void handleLocalRequest(Message<Buffer> message, DeliveryOptions replyOptions) {
+        respond(new Frame(0, message.body())).andThen(asyncResponse -> {
+            if (asyncResponse.succeeded()) {
+                var frame = asyncResponse.result();
+                message.reply(frame.slice(Frame.HEADER_LENGTH, frame.length()), replyOptions);
             } else {
-                socket.write(FAILURE);
+                message.fail(500, asyncResponse.cause().getMessage());
             }
         });
     }
@@ -67,16 +159,62 @@ public class ScreamingEchoServiceVerticle extends AbstractVerticle {
     public void start(Promise<Void> startPromise) {
         LOGGER.info("Starting");
 
-        var options = new NetServerOptions().setPort(3002);
+        tokenGenerator = TokenGenerator.create(config());
+        tokenLength = tokenGenerator.length();
+        tokenStore = TokenStore.shared(vertx,
+                config().getInteger("tokenStoreCapacity", TokenStore.DEFAULT_CAPACITY),
+                config().getLong("tokenStoreTtl", TokenStore.DEFAULT_TTL));
+        nearCache = new NearCache(
+                config().getInteger("nearCacheCapacity", NearCache.DEFAULT_CAPACITY),
+                config().getLong("nearCacheTtl", NearCache.DEFAULT_TTL));
+        vertx.eventBus().<Buffer> localConsumer(TokenStore.INVALIDATED_ADDRESS,
+                message -> nearCache.invalidate(TokenStore.decode(message.body())));
+
+        var metrics = PipelineMetrics.shared(vertx);
+        validCounter = metrics.tokenCounter("validate", "ok");
+        invalidCounter = metrics.tokenCounter("validate", "nok");
+        openSockets = metrics.openSockets("server", "echo");
+        rejectedSockets = metrics.rejectedSockets("echo");
+        pausedTimer = metrics.pausedTimer("echo");
+        offloadQueue = metrics.workerQueue("echo");
+        offloadTimer = metrics.stageTimer("echo.offload");
+
+        offloadThreshold = config().getInteger("offloadThreshold", DEFAULT_OFFLOAD_THRESHOLD);
+        offloadMaxQueueSize = config().getInteger("offloadMaxQueueSize", DEFAULT_OFFLOAD_MAX_QUEUE_SIZE);
+        offloadExecutor = vertx.createSharedWorkerExecutor(OFFLOAD_POOL,
+                config().getInteger("offloadPoolSize", DEFAULT_OFFLOAD_POOL_SIZE));
+
+        BufferMessageCodec.registerEchoCodecs(vertx);
+        var replyOptions = LocalService.deliveryOptions();
+        vertx.eventBus().<Buffer> localConsumer(EchoService.ADDRESS, message -> handleLocalRequest(message, replyOptions));
+
+        var options = new NetServerOptions()
+                .setPort(config().getInteger("echoPort", DEFAULT_PORT))
+                .setReusePort(config().getBoolean("reusePort", vertx.isNativeTransportEnabled()));
         var netServer = vertx.createNetServer(options);
 
-        netServer.connectHandler(socket ->
-                socket.handler(buffer ->
-                        handleRequest(socket, buffer)));
+        var maxConnections = config().getInteger("serverMaxConnections", ServerConnection.DEFAULT_MAX_CONNECTIONS);
+        var maxInFlight = config().getInteger("serverMaxInFlight", ServerConnection.DEFAULT_MAX_IN_FLIGHT);
+        netServer.connectHandler(socket -> {
+            if (openSockets.incrementAndGet() > maxConnections) {
+                openSockets.decrementAndGet();
+                rejectedSockets.increment();
+                socket.close();
+                return;
+            }
+
+            socket.closeHandler(v -> openSockets.decrementAndGet());
+            var connection = new ServerConnection(socket, maxInFlight, pausedTimer);
+            socket.handler(new FrameParser(frame -> handleRequest(connection, frame), cause -> {
+                LOGGER.warn("Closing connection from {} after error", socket.remoteAddress(), cause);
+                socket.close();
+            }));
+        });
 
         netServer.listen(ar -> {
             if (ar.succeeded()) {
                 LOGGER.debug("Listening for connections on port {}", netServer.actualPort());
+                LocalService.register(vertx, EchoService.ADDRESS);
                 startPromise.complete();
             } else {
                 LOGGER.error("Failed to listen for connections", ar.cause());
@@ -84,4 +222,9 @@ public class ScreamingEchoServiceVerticle extends AbstractVerticle {
             }
         });
     }
+
+    @Override
+    public void stop() {
+        LocalService.unregister(vertx, EchoService.ADDRESS);
+    }
 }
@@ -0,0 +1,84 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+
+/**
+ * Server side of a connection, which stops reading requests while too many earlier ones are unanswered.
+ *
+ * A request is in flight from the moment it is {@link #received() received} until its response has been flushed, so
+ * requests still waiting for a worker thread or a token check count as well. Reading is paused when the given number of
+ * requests is in flight or the socket's write queue is full, and resumed once both have drained. This bounds the memory
+ * and work a single client can make the server take on.
+ * Frames that were already read when the connection is paused are still handled, so the limit may be exceeded by the
+ * requests in a single read.
+ * Like {@link ConnectionPool}, a connection must only be used from the event loop of the verticle that owns it.
+ */
+public class ServerConnection {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    public static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+
+    private final NetSocket socket;
+    private final int maxInFlight;
+    private final Timer pausedTimer;
+
+    private int inFlight;
+    private boolean paused;
+    private long pausedAt;
+
+    public ServerConnection(NetSocket socket, int maxInFlight, Timer pausedTimer) {
+        this.socket = socket;
+        this.maxInFlight = maxInFlight;
+        this.pausedTimer = pausedTimer;
+
+        socket.drainHandler(v -> resumeIfDrained());
+    }
+
+    public NetSocket socket() {
+        return socket;
+    }
+
+    /**
+     * Marks the start of a request, which ends when its response is {@link #write(Buffer) written} and flushed.
+     */
+    public void received() {
+        ++inFlight;
+        pauseIfBusy();
+    }
+
+    public void write(Buffer response) {
+        socket.write(response).onComplete(asyncResult -> {
+            --inFlight;
+            resumeIfDrained();
+        });
+        pauseIfBusy();
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void pauseIfBusy() {
+        if (!paused && (inFlight >= maxInFlight || socket.writeQueueFull())) {
+            paused = true;
+            pausedAt = System.nanoTime();
+            socket.pause();
+        }
+    }
+
+    private void resumeIfDrained() {
+        if (paused && inFlight < maxInFlight && !socket.writeQueueFull()) {
+            pausedTimer.record(System.nanoTime() - pausedAt, TimeUnit.NANOSECONDS);
+            paused = false;
+            socket.resume();
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package nl.kabisa.vertx.tcp;
 
-import io.vertx.core.Promise;
-
-import com.google.common.primitives.Bytes;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.ThreadingModel;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetClient;
-import io.vertx.core.net.NetSocket;
+import nl.kabisa.vertx.config.Configuration;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,85 +26,339 @@ public class TcpClientVerticle extends AbstractVerticle {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TcpClientVerticle.class);
 
+    private static final long DEFAULT_REQUEST_TIMEOUT = 5_000;
+    private static final long DEFAULT_AUTH_TIMEOUT = 1_000;
+    private static final long DEFAULT_ECHO_TIMEOUT = 1_000;
+    private static final String DEFAULT_HOST = "localhost";
+
     private EventBus eventBus;
     private NetClient authClient;
     private NetClient echoClient;
+    private ConnectionPool authPool;
+    private ConnectionPool echoPool;
+    private TcpService tcpAuthService;
+    private TcpService tcpEchoService;
+    private LocalService localAuthService;
+    private LocalService localEchoService;
+    private boolean preferLocalServices;
+    private Backend authBackend;
+    private Backend echoBackend;
+    private Buffer credentials;
+    private TokenCache tokenCache;
+    private Batcher<BatchItem, Buffer> batcher;
+    private long requestTimeout;
+    private long authTimeout;
+    private long echoTimeout;
+    private Timer authenticateTimer;
+    private Timer echoForwardTimer;
 
-    private Future<NetSocket> connectToAuthService() {
-        var promise = Promise.<NetSocket>promise();
+    private static long stageTimeout(long deadline, long timeout) {
+        return Math.min(timeout, deadline - System.currentTimeMillis());
+    }
 
-        authClient.connect(3001, "localhost", promise);
+    private static <T> Future<T> deadlineExceeded(String stage) {
+        return Future.failedFuture(new DeadlineExceededException("Deadline exceeded before " + stage));
+    }
 
-        return promise.future();
+    /**
+     * Marks the timeouts of a request as caused by the caller's deadline if that left less time than the stage timeout,
+     * so that the circuit breaker and concurrency limiter don't count them against the backend.
+     */
+    private static <T> Future<T> blameDeadline(Future<T> response, long timeout, long stageTimeout) {
+        if (timeout >= stageTimeout) {
+            return response;
+        }
+        return response.recover(cause -> Future.failedFuture(cause instanceof DeadlineExceededException
+                ? new DeadlineExceededException(cause.getMessage(), true)
+                : cause));
     }
 
-    private Future<Buffer> authenticate(NetSocket authSocket) {
-        var promise = Promise.<Buffer>promise();
+    /**
+     * Returns the auth service to call: the one deployed in this Vert.x instance if there is one, so that requests don't
+     * have to go over loopback TCP, and the one at the configured address otherwise.
+     */
+    private AuthService authService() {
+        return preferLocalServices && localAuthService.isDeployed() ? localAuthService : tcpAuthService;
+    }
 
-        authSocket.handler(authBuffer -> {
+    private EchoService echoService() {
+        return preferLocalServices && localEchoService.isDeployed() ? localEchoService : tcpEchoService;
+    }
+
+    /**
+     * Fetches a token for the {@link TokenCache}. The fetch is shared by all requests waiting for a token, so it is
+     * bounded by the auth timeout alone, rather than by the deadline of whichever request happened to start it.
+     */
+    private Future<Buffer> authenticate() {
+        return authBackend.request(() -> PipelineMetrics.time(authenticateTimer, () -> authService().authenticate(credentials, authTimeout))).compose(authBuffer -> {
             if (authBuffer.getByte(0) == 0) {
-                promise.fail("Invalid credentials");
+                return Future.failedFuture("Invalid credentials");
             } else if (authBuffer.getByte(0) == 2) {
-                promise.fail("Unexpected error");
+                return Future.failedFuture("Unexpected error");
             } else if (authBuffer.getByte(0) == 1) {
-                promise.complete(authBuffer.getBuffer(1, authBuffer.length()));
+                return Future.succeededFuture(authBuffer.getBuffer(1, authBuffer.length()));
             } else {
-                promise.fail("Unexpected response from authentication service");
+                return Future.failedFuture("Unexpected response from authentication service");
             }
         });
-
-        authSocket.write(Buffer.buffer(new byte[] { 1, 2, 3, 4 }));
-
-        return promise.future();
     }
 
-    private Future<NetSocket> connectToEchoClient() {
-        var promise = Promise.<NetSocket>promise();
-
-        echoClient.connect(3002, "localhost", promise);
+    private Future<Buffer> forwardToEchoClient(Buffer token, Buffer input, long deadline) {
+        var timeout = stageTimeout(deadline, echoTimeout);
+        if (timeout <= 0) {
+            return deadlineExceeded("forwarding to echo service");
+        }
 
-        return promise.future();
+        var request = Batch.single(token, input);
+        return echoBackend.request(() -> PipelineMetrics.time(echoForwardTimer, () -> blameDeadline(echoService().echo(request, timeout), timeout, echoTimeout))).compose(echoBuffer -> {
+            if (echoBuffer.getByte(0) == 0) {
+                return Future.failedFuture(new UnauthenticatedException());
+            } else if (echoBuffer.getByte(0) == 2) {
+                return Future.failedFuture(new RejectedException("Echo service is busy"));
+            } else if (echoBuffer.getByte(0) == 1) {
+                return Future.succeededFuture(echoBuffer.getBuffer(1, echoBuffer.length()));
+            } else {
+                return Future.failedFuture("Unexpected response from echo service");
+            }
+        });
     }
 
-    private Future<Buffer> forwardToEchoClient(NetSocket echoSocket, Buffer token, String input) {
-        var promise = Promise.<Buffer>promise();
+    private Future<List<Buffer>> forwardBatchToEchoClient(Buffer token, List<Buffer> inputs, long deadline) {
+        var timeout = stageTimeout(deadline, echoTimeout);
+        if (timeout <= 0) {
+            return deadlineExceeded("forwarding to echo service");
+        }
 
-        echoSocket.handler(echoBuffer -> {
+        return echoBackend.request(() -> PipelineMetrics.time(echoForwardTimer, () -> blameDeadline(echoService().echo(Batch.request(token, inputs), timeout), timeout, echoTimeout))).compose(echoBuffer -> {
             if (echoBuffer.getByte(0) == 0) {
-                promise.fail("Unauthenticated");
+                return Future.failedFuture(new UnauthenticatedException());
+            } else if (echoBuffer.getByte(0) == 2) {
+                return Future.failedFuture(new RejectedException("Echo service is busy"));
             } else if (echoBuffer.getByte(0) == 1) {
-                promise.complete(echoBuffer.getBuffer(1, echoBuffer.length()));
+                return Future.succeededFuture(Batch.items(echoBuffer, 1));
             } else {
-                promise.fail("Unexpected response from echo service");
+                return Future.failedFuture("Unexpected response from echo service");
             }
         });
-        echoSocket.write(Buffer.buffer(Bytes.concat(token.getBytes(), input.getBytes())));
+    }
+
+    private <T> Future<T> withToken(long deadline, Function<Buffer, Future<T>> operation, boolean retryIfUnauthenticated) {
+        return token(deadline)
+                .compose(token -> operation.apply(token)
+                        .recover(cause -> {
+                            if (retryIfUnauthenticated && cause instanceof UnauthenticatedException) {
+                                tokenCache.invalidate(token);
+                                return withToken(deadline, operation, false);
+                            }
+                            return Future.failedFuture(cause);
+                        }));
+    }
 
+    /**
+     * Returns the cached token, or the result of the shared fetch, waiting for it no longer than the given deadline.
+     */
+    private Future<Buffer> token(long deadline) {
+        if (deadline <= System.currentTimeMillis()) {
+            return deadlineExceeded("authentication");
+        }
+        return expireAt(deadline, tokenCache.get(this::authenticate));
+    }
+
+    /**
+     * Fails the given future's result once the deadline has passed, without waiting for the future itself.
+     */
+    private <T> Future<T> expireAt(long deadline, Future<T> future) {
+        if (future.isComplete()) {
+            return future;
+        }
+
+        var promise = Promise.<T>promise();
+        var timerId = vertx.setTimer(Math.max(1, deadline - System.currentTimeMillis()),
+                id -> promise.tryFail(new DeadlineExceededException("Deadline exceeded")));
+        future.onComplete(asyncResult -> {
+            vertx.cancelTimer(timerId);
+            if (asyncResult.succeeded()) {
+                promise.tryComplete(asyncResult.result());
+            } else {
+                promise.tryFail(asyncResult.cause());
+            }
+        });
         return promise.future();
     }
 
-    private void handleEvent(Message<JsonObject> event) {
-        connectToAuthService()
-                .compose(this::authenticate)
-                .compose(token -> connectToEchoClient()
-                        .compose(socket -> forwardToEchoClient(socket, token, event.body().getString("body"))))
+    private Future<Buffer> echo(Buffer input, long deadline) {
+        if (batcher != null) {
+            return expireAt(deadline, batcher.add(new BatchItem(input, deadline)));
+        }
+        return withToken(deadline, token -> forwardToEchoClient(token, input, deadline), true);
+    }
+
+    private Future<List<Buffer>> echoBatch(List<BatchItem> items) {
+        var inputs = items.stream().map(BatchItem::input).toList();
+        var deadline = items.stream().mapToLong(BatchItem::deadline).max().orElseThrow();
+        return withToken(deadline, token -> forwardBatchToEchoClient(token, inputs, deadline), true);
+    }
+
+    /**
+     * Same as {@link #echo(Buffer, long)}, but written as sequential code, which suspends the calling virtual thread
+     * while waiting for a response instead of composing futures.
+     */
+    private Buffer echoSequentially(Buffer input, long deadline) {
+        if (batcher != null) {
+            return Future.await(echo(input, deadline));
+        }
+
+        var token = Future.await(token(deadline));
+        try {
+            return Future.await(forwardToEchoClient(token, input, deadline));
+        } catch (UnauthenticatedException e) {
+            tokenCache.invalidate(token);
+            var newToken = Future.await(token(deadline));
+            return Future.await(forwardToEchoClient(newToken, input, deadline));
+        }
+    }
+
+    private long deadline(EchoRequest request) {
+        return request.deadline() > 0 ? request.deadline() : System.currentTimeMillis() + requestTimeout;
+    }
+
+    private static void fail(Message<EchoRequest> event, Throwable cause) {
+        if (cause instanceof DeadlineExceededException) {
+            event.fail(504, cause.getMessage());
+        } else if (cause instanceof RejectedException) {
+            event.fail(503, cause.getMessage());
+        } else {
+            event.fail(500, cause.getMessage());
+        }
+    }
+
+    private void handleEvent(Message<EchoRequest> event) {
+        var request = event.body();
+
+        echo(request.body(), deadline(request))
                 .andThen(asyncBuffer -> {
                     if (asyncBuffer.succeeded()) {
-                        event.reply(asyncBuffer.result());
+                        event.reply(new EchoResponse(asyncBuffer.result()));
                     } else {
-                        event.fail(500, asyncBuffer.cause().getMessage());
+                        fail(event, asyncBuffer.cause());
                     }
                 });
     }
 
+    private void handleEventSequentially(Message<EchoRequest> event) {
+        var request = event.body();
+
+        Buffer output;
+        try {
+            output = echoSequentially(request.body(), deadline(request));
+        } catch (Throwable cause) {
+            // Future.await rethrows failures as they are, and failures created from a message aren't exceptions
+            fail(event, cause);
+            return;
+        }
+        event.reply(new EchoResponse(output));
+    }
+
     @Override
     public void start() {
         LOGGER.info("Starting");
 
         eventBus = vertx.eventBus();
+        BufferMessageCodec.registerEchoCodecs(vertx);
         authClient = vertx.createNetClient();
         echoClient = vertx.createNetClient();
+        authPool = new ConnectionPool(vertx, authClient,
+                config().getInteger("authPort", AuthServiceVerticle.DEFAULT_PORT),
+                config().getString("authHost", DEFAULT_HOST),
+                poolOptions(config()).setName("auth"));
+        echoPool = new ConnectionPool(vertx, echoClient,
+                config().getInteger("echoPort", ScreamingEchoServiceVerticle.DEFAULT_PORT),
+                config().getString("echoHost", DEFAULT_HOST),
+                poolOptions(config()).setName("echo"));
+        tcpAuthService = new TcpService(authPool);
+        tcpEchoService = new TcpService(echoPool);
+        localAuthService = new LocalService(vertx, AuthService.ADDRESS);
+        localEchoService = new LocalService(vertx, EchoService.ADDRESS);
+        preferLocalServices = config().getBoolean("preferLocalServices", true);
+        credentials = Buffer.buffer(AuthServiceVerticle.secret(config()));
+        tokenCache = new TokenCache(config().getLong("tokenTtl", TokenCache.DEFAULT_TTL));
+        Configuration.watch(vertx, config(), this::configure);
+
+        var batchMaxSize = config().getInteger("batchMaxSize", Batcher.DEFAULT_MAX_SIZE);
+        if (batchMaxSize > 1) {
+            batcher = new Batcher<>(vertx, batchMaxSize, config().getLong("batchMaxDelay", Batcher.DEFAULT_MAX_DELAY), this::echoBatch);
+        }
+
+        var metrics = PipelineMetrics.shared(vertx);
+        authBackend = backend("auth", metrics);
+        echoBackend = backend("echo", metrics);
+        authenticateTimer = metrics.stageTimer("authenticate");
+        echoForwardTimer = metrics.stageTimer("echo.forward");
+
+        if (context.threadingModel() == ThreadingModel.VIRTUAL_THREAD) {
+            LOGGER.info("Handling requests on virtual threads");
+            eventBus.consumer(REQUEST_ADDRESS, this::handleEventSequentially);
+        } else {
+            eventBus.consumer(REQUEST_ADDRESS, this::handleEvent);
+        }
+    }
+
+    @Override
+    public void stop() {
+        authPool.close();
+        echoPool.close();
+    }
+
+    /**
+     * Applies the keys that can change while running: timeouts and pool limits.
+     */
+    private void configure(JsonObject config) {
+        requestTimeout = config.getLong("requestTimeout", DEFAULT_REQUEST_TIMEOUT);
+        authTimeout = config.getLong("authTimeout", DEFAULT_AUTH_TIMEOUT);
+        echoTimeout = config.getLong("echoTimeout", DEFAULT_ECHO_TIMEOUT);
+        authPool.setOptions(poolOptions(config));
+        echoPool.setOptions(poolOptions(config));
+    }
+
+    private static ConnectionPoolOptions poolOptions(JsonObject config) {
+        return new ConnectionPoolOptions()
+                .setMaxSize(config.getInteger("poolMaxSize", ConnectionPoolOptions.DEFAULT_MAX_SIZE))
+                .setMaxInFlight(config.getInteger("poolMaxInFlight", ConnectionPoolOptions.DEFAULT_MAX_IN_FLIGHT))
+                .setMaxWaitQueueSize(config.getInteger("poolMaxWaitQueueSize", ConnectionPoolOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE))
+                .setIdleTimeout(config.getLong("poolIdleTimeout", ConnectionPoolOptions.DEFAULT_IDLE_TIMEOUT))
+                .setEvictionInterval(config.getLong("poolEvictionInterval", ConnectionPoolOptions.DEFAULT_EVICTION_INTERVAL))
+                .setMaxConsecutiveTimeouts(config.getInteger("poolMaxConsecutiveTimeouts",
+                        ConnectionPoolOptions.DEFAULT_MAX_CONSECUTIVE_TIMEOUTS));
+    }
+
+    private Backend backend(String name, PipelineMetrics metrics) {
+        return new Backend(
+                new ConcurrencyLimiter(name,
+                        config().getInteger("limiterInitialLimit", ConcurrencyLimiter.DEFAULT_INITIAL_LIMIT),
+                        config().getInteger("limiterMaxLimit", ConcurrencyLimiter.DEFAULT_MAX_LIMIT),
+                        config().getLong("limiterLatencyThreshold", ConcurrencyLimiter.DEFAULT_LATENCY_THRESHOLD)),
+                new CircuitBreaker(name,
+                        config().getInteger("breakerFailureThreshold", CircuitBreaker.DEFAULT_FAILURE_THRESHOLD),
+                        config().getLong("breakerResetTimeout", CircuitBreaker.DEFAULT_RESET_TIMEOUT)),
+                metrics.rejectionCounter(name));
+    }
+
+    /**
+     * Guards the requests to a backend. The limiter comes first, so that requests rejected by an open circuit breaker
+     * don't count as fast successes.
+     */
+    private record Backend(ConcurrencyLimiter limiter, CircuitBreaker circuitBreaker, Counter rejections) {
+
+        Future<Buffer> request(Supplier<Future<Buffer>> request) {
+            return limiter.execute(() -> circuitBreaker.execute(request))
+                    .onFailure(cause -> {
+                        if (cause instanceof RejectedException) {
+                            rejections.increment();
+                        }
+                    });
+        }
+    }
 
-        eventBus.consumer(REQUEST_ADDRESS, this::handleEvent);
+    private record BatchItem(Buffer input, long deadline) {
     }
 }
@@ -0,0 +1,26 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Calls the auth or echo service over the connections of a pool.
+ */
+public class TcpService implements AuthService, EchoService {
+
+    private final ConnectionPool pool;
+
+    public TcpService(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Future<Buffer> authenticate(Buffer credentials, long timeout) {
+        return pool.request(credentials, timeout);
+    }
+
+    @Override
+    public Future<Buffer> echo(Buffer request, long timeout) {
+        return pool.request(request, timeout);
+    }
+}
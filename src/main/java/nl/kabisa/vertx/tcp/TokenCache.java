@@ -0,0 +1,55 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.function.Supplier;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Caches a single authentication token for a limited time.
+ *
+ * Concurrent callers that find the cache empty share a single in-flight fetch instead of each authenticating on their
+ * own. Like {@link ConnectionPool}, a cache must only be used from the event loop of the verticle that owns it.
+ */
+public class TokenCache {
+
+    public static final long DEFAULT_TTL = 300_000;
+
+    private final long ttl;
+
+    private Buffer token;
+    private long expiresAt;
+    private Future<Buffer> pendingFetch;
+
+    public TokenCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public Future<Buffer> get(Supplier<Future<Buffer>> fetcher) {
+        if (token != null && System.currentTimeMillis() < expiresAt) {
+            return Future.succeededFuture(token);
+        }
+
+        if (pendingFetch != null) {
+            return pendingFetch;
+        }
+
+        var fetch = fetcher.get();
+        pendingFetch = fetch;
+        fetch.andThen(asyncToken -> {
+            pendingFetch = null;
+            if (asyncToken.succeeded()) {
+                token = asyncToken.result();
+                expiresAt = System.currentTimeMillis() + ttl;
+            }
+        });
+
+        return fetch;
+    }
+
+    public void invalidate(Buffer staleToken) {
+        if (staleToken.equals(token)) {
+            token = null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Generates the tokens issued by the auth service.
+ *
+ * All tokens of a generator have the same length, which is how the echo service finds where the token in a request
+ * ends and the input begins. Generators may be called from any thread.
+ */
+public interface TokenGenerator {
+
+    String RANDOM = "random";
+    String HMAC = "hmac";
+
+    /**
+     * Returns the generator selected by the {@code tokenType} key of the given configuration: {@value #RANDOM} tokens,
+     * which are kept in the {@link TokenStore}, or self-contained {@value #HMAC} tokens, signed with {@code tokenSecret}.
+     */
+    static TokenGenerator create(JsonObject config) {
+        var type = config.getString("tokenType", RANDOM);
+        return switch (type) {
+            case RANDOM -> new RandomTokenGenerator();
+            case HMAC -> {
+                var secret = config.getBinary("tokenSecret");
+                if (secret == null) {
+                    throw new IllegalArgumentException("HMAC tokens require a token secret");
+                }
+                yield new HmacTokenGenerator(secret, config.getLong("tokenStoreTtl", TokenStore.DEFAULT_TTL));
+            }
+            default -> throw new IllegalArgumentException("Unknown token type " + type);
+        };
+    }
+
+    int length();
+
+    Buffer generate();
+}
@@ -0,0 +1,145 @@
+package nl.kabisa.vertx.tcp;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Bounded store of the tokens issued by the auth service.
+ *
+ * Tokens expire after a fixed time to live. When the store is full, a token that hasn't been used recently is evicted to
+ * make room for a new one. The store is split into segments that are locked independently, with one segment per event
+ * loop by default, so issuing and validating tokens on different event loops rarely contends. Within a segment, the
+ * least recently used token is evicted first.
+ * Each token is held as its two halves and its expiration time, in a single entry that is both the key and the value,
+ * so a stored token costs one object besides the cache's own bookkeeping.
+ *
+ * A single store is shared by all verticles deployed on a Vert.x instance, so every method is thread-safe.
+ * The shared store publishes the tokens that are removed or evicted before they expire on {@link #INVALIDATED_ADDRESS},
+ * encoded like {@link #encode(UUID)}, so that caches of validated tokens can drop them.
+ */
+public class TokenStore implements Shareable {
+
+    public static final int DEFAULT_CAPACITY = 100_000;
+    public static final long DEFAULT_TTL = 600_000;
+    public static final long DEFAULT_SWEEP_INTERVAL = 10_000;
+
+    public static final String INVALIDATED_ADDRESS = "token.store.invalidated";
+
+    private static final String LOCAL_MAP = "TOKEN_STORE";
+
+    private final long ttl;
+    private final Cache<Token, Token> tokens;
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    public TokenStore(int capacity, long ttl) {
+        this(capacity, ttl, token -> {});
+    }
+
+    public TokenStore(int capacity, long ttl, Handler<UUID> invalidationHandler) {
+        this.ttl = ttl;
+        this.tokens = CacheBuilder.newBuilder()
+                .concurrencyLevel(VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE)
+                .maximumSize(capacity)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .<Token, Token> removalListener(notification -> {
+                    var token = notification.getValue();
+                    if (notification.getCause() == RemovalCause.SIZE
+                            || (notification.getCause() == RemovalCause.EXPLICIT && token.expirationTime() > System.currentTimeMillis())) {
+                        invalidationHandler.handle(new UUID(token.mostSignificantBits(), token.leastSignificantBits()));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the store shared by all verticles of the given Vert.x instance, creating it with the given capacity and
+     * time to live if it doesn't exist yet.
+     */
+    public static TokenStore shared(Vertx vertx, int capacity, long ttl) {
+        return vertx.sharedData().<String, TokenStore> getLocalMap(LOCAL_MAP)
+                .computeIfAbsent(LOCAL_MAP, name -> new TokenStore(capacity, ttl,
+                        token -> vertx.eventBus().publish(INVALIDATED_ADDRESS, encode(token))));
+    }
+
+    public static Buffer encode(UUID token) {
+        return Buffer.buffer(16)
+                .appendLong(token.getMostSignificantBits())
+                .appendLong(token.getLeastSignificantBits());
+    }
+
+    public static UUID decode(Buffer buffer) {
+        return new UUID(buffer.getLong(0), buffer.getLong(8));
+    }
+
+    public void add(UUID token) {
+        var entry = new Token(token.getMostSignificantBits(), token.getLeastSignificantBits(), System.currentTimeMillis() + ttl);
+        tokens.put(entry, entry);
+    }
+
+    public boolean contains(UUID token) {
+        return expirationTime(token) > 0;
+    }
+
+    /**
+     * Returns the time at which the given token expires, or 0 if the store doesn't contain a valid token.
+     */
+    public long expirationTime(UUID token) {
+        var entry = tokens.getIfPresent(Token.of(token));
+        return entry != null ? entry.expirationTime() : 0;
+    }
+
+    public void remove(UUID token) {
+        tokens.invalidate(Token.of(token));
+    }
+
+    public int size() {
+        return (int) tokens.size();
+    }
+
+    /**
+     * Removes expired tokens, unless another caller has already done so less than the given interval ago.
+     * This allows every verticle using the store to schedule sweeps without multiplying the work.
+     */
+    public void sweep(long interval) {
+        var now = System.currentTimeMillis();
+        var last = lastSweep.get();
+        if (now - last < interval || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+
+        tokens.cleanUp();
+    }
+
+    /**
+     * A stored token. Tokens are equal if their bits are, whatever their expiration times.
+     */
+    private record Token(long mostSignificantBits, long leastSignificantBits, long expirationTime) {
+
+        private static Token of(UUID token) {
+            return new Token(token.getMostSignificantBits(), token.getLeastSignificantBits(), 0);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Token token
+                    && mostSignificantBits == token.mostSignificantBits
+                    && leastSignificantBits == token.leastSignificantBits;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(mostSignificantBits ^ leastSignificantBits);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package nl.kabisa.vertx.tcp;
+
+import io.vertx.core.VertxException;
+
+public class UnauthenticatedException extends VertxException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnauthenticatedException() {
+        super("Unauthenticated", true);
+    }
+}
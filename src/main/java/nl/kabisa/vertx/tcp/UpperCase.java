@@ -0,0 +1,169 @@
+package nl.kabisa.vertx.tcp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ByteProcessor;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Upper-cases UTF-8 text directly from and into Netty buffers.
+ *
+ * ASCII text, by far the most common input, is converted byte by byte without decoding it into a string first.
+ * Only the part of the input starting at the first non-ASCII byte is decoded, upper-cased and encoded again.
+ * Frames are written straight into unpooled heap buffers. Vert.x never releases the Netty buffers behind its buffers,
+ * so memory taken from a pooled allocator would not return to the pool.
+ */
+public final class UpperCase {
+
+    private static final ByteProcessor FIND_NON_ASCII = value -> value >= 0;
+
+    private UpperCase() {
+    }
+
+    /**
+     * Returns a frame with the given id, consisting of the given status byte followed by the upper case version of the
+     * given input, starting at the given offset. The frame is written into a single buffer sized for the input, which
+     * only grows if upper-casing non-ASCII text makes it longer.
+     *
+     * Vert.x 4 offers no alternative for the deprecated conversions between buffers and Netty buffers.
+     * Both conversions share the underlying bytes instead of copying them.
+     */
+    @SuppressWarnings("deprecation")
+    public static Buffer frame(int id, byte status, Buffer input, int offset) {
+        return Buffer.buffer(frame(id, status, input.getByteBuf().skipBytes(offset)));
+    }
+
+    /**
+     * Returns the same frame as {@link #frame(int, byte, Buffer, int)}, but converts the input in chunks of about the
+     * given size, cut at character boundaries. This keeps the strings decoded from large non-ASCII inputs small.
+     */
+    @SuppressWarnings("deprecation")
+    public static Buffer chunkedFrame(int id, byte status, Buffer input, int offset, int chunkSize) {
+        var inputBuf = input.getByteBuf();
+        var end = inputBuf.writerIndex();
+        var output = allocate(id, status, 1 + end - offset);
+
+        for (var start = offset; start < end; ) {
+            var chunkEnd = chunkEnd(inputBuf, start, chunkSize, end);
+            append(inputBuf.slice(start, chunkEnd - start), output);
+            start = chunkEnd;
+        }
+
+        return Buffer.buffer(complete(output));
+    }
+
+    /**
+     * Returns a frame with the given id, consisting of the given status byte followed by the upper case versions of the
+     * given inputs, encoded as {@link Batch batch} items.
+     */
+    @SuppressWarnings("deprecation")
+    public static Buffer batchFrame(int id, byte status, List<Buffer> inputs) {
+        var expectedPayloadLength = 1 + 4 + inputs.stream().mapToInt(input -> 4 + input.length()).sum();
+        var output = allocate(id, status, expectedPayloadLength).writeInt(inputs.size());
+
+        for (var input : inputs) {
+            var lengthIndex = output.writerIndex();
+            output.writeInt(0);
+            append(input.getByteBuf(), output);
+            output.setInt(lengthIndex, output.writerIndex() - lengthIndex - 4);
+        }
+
+        return Buffer.buffer(complete(output));
+    }
+
+    static ByteBuf frame(int id, byte status, ByteBuf input) {
+        var output = allocate(id, status, 1 + input.readableBytes());
+        append(input, output);
+        return complete(output);
+    }
+
+    /**
+     * Returns a buffer for a frame with the given id and expected payload length, holding the header and the status
+     * byte. The length in the header is only set by {@link #complete(ByteBuf)}.
+     */
+    private static ByteBuf allocate(int id, byte status, int expectedPayloadLength) {
+        return Unpooled.buffer(Frame.HEADER_LENGTH + expectedPayloadLength)
+                .writeInt(0)
+                .writeInt(id)
+                .writeByte(status);
+    }
+
+    private static ByteBuf complete(ByteBuf output) {
+        return output.setInt(0, output.writerIndex() - Frame.HEADER_LENGTH);
+    }
+
+    /**
+     * Returns the end of the chunk starting at the given index, moved to a character boundary. The end is moved back
+     * to the start of the character it falls in, unless that leaves the chunk empty.
+     */
+    private static int chunkEnd(ByteBuf input, int start, int chunkSize, int end) {
+        var chunkEnd = start + chunkSize;
+        if (chunkEnd >= end) {
+            return end;
+        }
+
+        var boundary = chunkEnd;
+        while (boundary > start && isContinuation(input.getByte(boundary))) {
+            --boundary;
+        }
+        if (boundary > start) {
+            return boundary;
+        }
+
+        while (chunkEnd < end && isContinuation(input.getByte(chunkEnd))) {
+            ++chunkEnd;
+        }
+        return chunkEnd;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Appends the upper case version of the readable bytes of the given input to the given output. Only the part
+     * starting at the first non-ASCII byte is decoded.
+     */
+    private static void append(ByteBuf input, ByteBuf output) {
+        var start = input.readerIndex();
+        var end = input.writerIndex();
+        var firstNonAscii = input.forEachByte(FIND_NON_ASCII);
+
+        if (firstNonAscii < 0) {
+            output.ensureWritable(end - start);
+            appendAscii(input, start, end, output);
+        } else {
+            output.ensureWritable(firstNonAscii - start);
+            appendAscii(input, start, firstNonAscii, output);
+            output.writeBytes(input.toString(firstNonAscii, end - firstNonAscii, StandardCharsets.UTF_8)
+                    .toUpperCase(Locale.ROOT)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void appendAscii(ByteBuf input, int start, int end, ByteBuf output) {
+        var length = end - start;
+        if (input.hasArray() && output.hasArray()) {
+            var inputArray = input.array();
+            var inputOffset = input.arrayOffset() + start;
+            var outputArray = output.array();
+            var outputOffset = output.arrayOffset() + output.writerIndex();
+            for (var i = 0; i < length; ++i) {
+                outputArray[outputOffset + i] = toUpperCase(inputArray[inputOffset + i]);
+            }
+            output.writerIndex(output.writerIndex() + length);
+        } else {
+            for (var i = start; i < end; ++i) {
+                output.writeByte(toUpperCase(input.getByte(i)));
+            }
+        }
+    }
+
+    private static byte toUpperCase(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+    }
+}
@@ -0,0 +1,90 @@
+package nl.kabisa.vertx.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.*;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+
+class AccessLogTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("access");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final HttpServerRequest request = mock(HttpServerRequest.class);
+
+    @BeforeEach
+    public void setUp() {
+        var response = mock(HttpServerResponse.class);
+        when(response.getStatusCode()).thenReturn(200);
+        when(response.bytesWritten()).thenReturn(5L);
+        when(request.method()).thenReturn(HttpMethod.POST);
+        when(request.path()).thenReturn("/echo");
+        when(request.bytesRead()).thenReturn(5L);
+        when(request.response()).thenReturn(response);
+
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    @DisplayName("Logs fixed fields of a request")
+    public void logsFixedFields() {
+        new AccessLog(10).log(request, System.nanoTime());
+
+        assertThat(appender.list).singleElement()
+                .extracting(ILoggingEvent::getFormattedMessage).asString()
+                .startsWith("method=POST path=/echo status=200 bytesRead=5 bytesWritten=5 latency=")
+                .endsWith("skipped=0");
+    }
+
+    @Test
+    @DisplayName("Skips requests beyond the maximum rate")
+    public void limitsRate() {
+        var accessLog = new AccessLog(2);
+
+        for (var i = 0; i < 5; ++i) {
+            accessLog.log(request, System.nanoTime());
+        }
+
+        assertThat(appender.list).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Keeps the rate window and skipped count when the maximum rate changes")
+    public void keepsWindowWhenMaxRateChanges() {
+        new AccessLog(1).log(request, System.nanoTime());
+        appender.list.clear();
+
+        var accessLog = new AccessLog(1);
+        accessLog.log(request, System.nanoTime());
+        accessLog.log(request, System.nanoTime());
+
+        accessLog.setMaxRate(2);
+        accessLog.log(request, System.nanoTime());
+        accessLog.log(request, System.nanoTime());
+
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage)
+                .hasSize(2)
+                .last().asString().endsWith("skipped=1");
+    }
+
+    @Test
+    @DisplayName("Logs nothing when disabled")
+    public void logsNothingWhenDisabled() {
+        new AccessLog(0).log(request, System.nanoTime());
+
+        assertThat(appender.list).isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package nl.kabisa.vertx.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+class ForwardingWriteStreamTest {
+
+    private final List<Buffer> forwarded = new ArrayList<>();
+    private final List<Promise<Buffer>> results = new ArrayList<>();
+    private final CollectingWriteStream output = new CollectingWriteStream();
+
+    private Future<Buffer> forward(Buffer chunk) {
+        forwarded.add(chunk);
+        var promise = Promise.<Buffer>promise();
+        results.add(promise);
+        return promise.future();
+    }
+
+    @Test
+    @DisplayName("Determines length of complete UTF-8 characters")
+    public void determinesCompleteUtf8Length() {
+        var bytes = "aé€😀".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(ForwardingWriteStream.completeUtf8Length(Buffer.buffer(bytes))).isEqualTo(bytes.length);
+        assertThat(ForwardingWriteStream.completeUtf8Length(Buffer.buffer(bytes).getBuffer(0, 2))).isEqualTo(1);
+        assertThat(ForwardingWriteStream.completeUtf8Length(Buffer.buffer(bytes).getBuffer(0, 5))).isEqualTo(3);
+        assertThat(ForwardingWriteStream.completeUtf8Length(Buffer.buffer(bytes).getBuffer(0, 8))).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Does not split multibyte characters")
+    public void doesNotSplitCharacters() {
+        var stream = new ForwardingWriteStream(this::forward, output, 4);
+        var bytes = Buffer.buffer("aé");
+
+        stream.write(bytes.getBuffer(0, 2));
+        stream.write(bytes.getBuffer(2, 3));
+
+        assertThat(forwarded).containsExactly(Buffer.buffer("a"), Buffer.buffer("é"));
+    }
+
+    @Test
+    @DisplayName("Writes results in order")
+    public void writesResultsInOrder() {
+        var stream = new ForwardingWriteStream(this::forward, output, 4);
+
+        stream.write(Buffer.buffer("first"));
+        stream.write(Buffer.buffer("second"));
+        results.get(1).complete(Buffer.buffer("SECOND"));
+
+        assertThat(output.written).isEmpty();
+
+        results.get(0).complete(Buffer.buffer("FIRST"));
+
+        assertThat(output.written).containsExactly(Buffer.buffer("FIRST"), Buffer.buffer("SECOND"));
+    }
+
+    @Test
+    @DisplayName("Limits number of chunks in flight")
+    public void limitsChunksInFlight() {
+        var stream = new ForwardingWriteStream(this::forward, output, 2);
+        var drained = new ArrayList<Void>();
+        stream.drainHandler(drained::add);
+
+        stream.write(Buffer.buffer("first"));
+        stream.write(Buffer.buffer("second"));
+
+        assertThat(stream.writeQueueFull()).isTrue();
+
+        results.get(0).complete(Buffer.buffer("FIRST"));
+
+        assertThat(stream.writeQueueFull()).isFalse();
+        assertThat(drained).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Ends once all results are written")
+    public void endsAfterAllResults() {
+        var stream = new ForwardingWriteStream(this::forward, output, 4);
+
+        stream.write(Buffer.buffer("first"));
+        var end = stream.end();
+
+        assertThat(end.isComplete()).isFalse();
+
+        results.get(0).complete(Buffer.buffer("FIRST"));
+
+        assertThat(end.succeeded()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Fails if forwarding a chunk fails")
+    public void failsIfForwardingFails() {
+        var stream = new ForwardingWriteStream(this::forward, output, 4);
+        var exceptions = new ArrayList<Throwable>();
+        stream.exceptionHandler(exceptions::add);
+
+        stream.write(Buffer.buffer("first"));
+        var end = stream.end();
+        results.get(0).fail("Failure");
+
+        assertThat(end.failed()).isTrue();
+        assertThat(exceptions).hasSize(1);
+        assertThat(output.written).isEmpty();
+    }
+
+    private static class CollectingWriteStream implements WriteStream<Buffer> {
+
+        private final List<Buffer> written = new ArrayList<>();
+
+        @Override
+        public Future<Void> write(Buffer data) {
+            written.add(data);
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+            write(data).onComplete(handler);
+        }
+
+        @Override
+        public void end(Handler<AsyncResult<Void>> handler) {
+            handler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return false;
+        }
+
+        @Override
+        public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+            return this;
+        }
+    }
+}
@@ -2,17 +2,29 @@ package nl.kabisa.vertx.http;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import nl.kabisa.vertx.config.Configuration;
+import nl.kabisa.vertx.tcp.EchoRequest;
+import nl.kabisa.vertx.tcp.EchoResponse;
 
 @ExtendWith(VertxExtension.class)
 class HttpServerVerticleTest {
 
+    private static final long DEFAULT_REQUEST_TIMEOUT = 5_000;
+
     private final HttpServerVerticle httpServerVerticle = new HttpServerVerticle();
 
     private WebClient webClient;
@@ -43,7 +55,7 @@ class HttpServerVerticleTest {
     public void respondsWithBodyOfReply(Vertx vertx, VertxTestContext vertxTestContext) {
         vertx.eventBus().consumer("tcp.client.request", reply -> {
             vertxTestContext.checkpoint();
-            reply.reply("👍");
+            reply.reply(new EchoResponse(Buffer.buffer("👍")));
         });
 
         webClient.post(8080, "localhost", "/").send(ar -> {
@@ -54,4 +66,170 @@ class HttpServerVerticleTest {
             vertxTestContext.completeNow();
         });
     }
+
+    @Test
+    @DisplayName("Streams large request bodies chunk by chunk")
+    public void streamsLargeBodies(Vertx vertx, VertxTestContext vertxTestContext) {
+        var chunks = new AtomicInteger();
+        vertx.eventBus().<EchoRequest> consumer("tcp.client.request", message -> {
+            chunks.incrementAndGet();
+            message.reply(new EchoResponse(Buffer.buffer(message.body().body().toString().toUpperCase())));
+        });
+
+        var body = "no touching é ".repeat(20_000);
+        webClient.post(8080, "localhost", "/").sendBuffer(Buffer.buffer(body), ar -> {
+            vertxTestContext.verify(() -> {
+                assertThat(ar.result().statusCode()).isEqualTo(200);
+                assertThat(ar.result().bodyAsString()).isEqualTo(body.toUpperCase());
+                assertThat(chunks.get()).isGreaterThan(1);
+            });
+            vertxTestContext.completeNow();
+        });
+    }
+
+    @Test
+    @DisplayName("Exposes metrics in the Prometheus format")
+    public void exposesMetrics(Vertx vertx, VertxTestContext vertxTestContext) {
+        webClient.get(8080, "localhost", "/metrics").send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.getHeader("Content-Type")).startsWith("text/plain");
+            assertThat(response.bodyAsString()).contains("pipeline_eventbus_replies_pending");
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Responds with 504 if there is no reply before the requested timeout")
+    public void respondsWith504AfterTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.eventBus().consumer("tcp.client.request", message -> {});
+
+        webClient.post(8080, "localhost", "/")
+                .putHeader("X-Request-Timeout", "100")
+                .send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+                    assertThat(response.statusCode()).isEqualTo(504);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Applies changed configuration without restarting")
+    public void appliesChangedConfiguration(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.eventBus().consumer("tcp.client.request", message -> {});
+        vertx.eventBus().publish(Configuration.CHANGED_ADDRESS, new JsonObject().put("requestTimeout", 100));
+
+        var startTime = System.currentTimeMillis();
+        webClient.post(8080, "localhost", "/").send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+            assertThat(response.statusCode()).isEqualTo(504);
+            assertThat(System.currentTimeMillis() - startTime).isLessThan(DEFAULT_REQUEST_TIMEOUT);
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Accepts HTTP/2 requests over cleartext")
+    public void acceptsHttp2ClearText(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.eventBus().consumer("tcp.client.request", message -> message.reply(new EchoResponse(Buffer.buffer("OUTPUT"))));
+
+        var http2Client = WebClient.create(vertx, new WebClientOptions()
+                .setProtocolVersion(HttpVersion.HTTP_2)
+                .setHttp2ClearTextUpgrade(false));
+        http2Client.post(8080, "localhost", "/").send(vertxTestContext.succeeding(response -> vertxTestContext.verify(() -> {
+            assertThat(response.version()).isEqualTo(HttpVersion.HTTP_2);
+            assertThat(response.bodyAsString()).isEqualTo("OUTPUT");
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Compresses responses only above the compression threshold")
+    public void compressesLargeResponses(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.eventBus().<EchoRequest> consumer("tcp.client.request", message -> message.reply(new EchoResponse(message.body().body())));
+
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("compressionSupported", true).put("compressionThreshold", 100));
+        vertx.undeploy(httpServerVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new HttpServerVerticle(), options))
+                .compose(id -> webClient.post(8080, "localhost", "/")
+                        .putHeader("Accept-Encoding", "gzip")
+                        .sendBuffer(Buffer.buffer("small")))
+                .onComplete(vertxTestContext.succeeding(small -> vertxTestContext.verify(() ->
+                        assertThat(small.getHeader("Content-Encoding")).isNotEqualTo("gzip"))))
+                .compose(small -> webClient.post(8080, "localhost", "/")
+                        .putHeader("Accept-Encoding", "gzip")
+                        .sendBuffer(Buffer.buffer("large ".repeat(100))))
+                .onComplete(vertxTestContext.succeeding(large -> vertxTestContext.verify(() -> {
+                    assertThat(large.getHeader("Content-Encoding")).isEqualTo("gzip");
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Answers repeated requests from the response cache")
+    public void answersFromCache(Vertx vertx, VertxTestContext vertxTestContext) {
+        var requests = new AtomicInteger();
+        vertx.eventBus().<EchoRequest> consumer("tcp.client.request", message -> {
+            requests.incrementAndGet();
+            message.reply(new EchoResponse(Buffer.buffer(message.body().body().toString().toUpperCase())));
+        });
+
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("responseCacheMaxBytes", 1024));
+        vertx.undeploy(httpServerVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new HttpServerVerticle(), options))
+                .compose(id -> webClient.post(8080, "localhost", "/").sendBuffer(Buffer.buffer("no touching")))
+                .compose(first -> webClient.post(8080, "localhost", "/").sendBuffer(Buffer.buffer("no touching"))
+                        .onComplete(vertxTestContext.succeeding(second -> vertxTestContext.verify(() -> {
+                            assertThat(second.statusCode()).isEqualTo(200);
+                            assertThat(second.bodyAsString()).isEqualTo("NO TOUCHING");
+                            assertThat(second.getHeader("ETag")).isNotNull().isEqualTo(first.getHeader("ETag"));
+                        }))))
+                .compose(second -> webClient.get(8080, "localhost", "/metrics").send())
+                .onComplete(vertxTestContext.succeeding(metrics -> vertxTestContext.verify(() -> {
+                    assertThat(requests).hasValue(1);
+                    assertThat(metrics.bodyAsString()).contains("cache_gets_total{cache=\"responses\",result=\"hit\",} 1.0");
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Responds with 304 if the client has the current response")
+    public void respondsWith304GivenMatchingEtag(Vertx vertx, VertxTestContext vertxTestContext) {
+        var requests = new AtomicInteger();
+        vertx.eventBus().<EchoRequest> consumer("tcp.client.request", message -> {
+            requests.incrementAndGet();
+            message.reply(new EchoResponse(Buffer.buffer(message.body().body().toString().toUpperCase())));
+        });
+
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("responseCacheMaxBytes", 1024));
+        vertx.undeploy(httpServerVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new HttpServerVerticle(), options))
+                .compose(id -> webClient.post(8080, "localhost", "/").sendBuffer(Buffer.buffer("no touching")))
+                .compose(first -> webClient.get(8080, "localhost", "/")
+                        .putHeader("If-None-Match", first.getHeader("ETag"))
+                        .sendBuffer(Buffer.buffer("no touching")))
+                .onComplete(vertxTestContext.succeeding(second -> vertxTestContext.verify(() -> {
+                    assertThat(second.statusCode()).isEqualTo(304);
+                    assertThat(second.body()).isNull();
+                    assertThat(requests).hasValue(1);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Responds with 412 to a POST if the client has the current response")
+    public void respondsWith412GivenMatchingEtagOnPost(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.eventBus().<EchoRequest> consumer("tcp.client.request", message ->
+                message.reply(new EchoResponse(Buffer.buffer(message.body().body().toString().toUpperCase()))));
+
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("responseCacheMaxBytes", 1024));
+        vertx.undeploy(httpServerVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new HttpServerVerticle(), options))
+                .compose(id -> webClient.post(8080, "localhost", "/").sendBuffer(Buffer.buffer("no touching")))
+                .compose(first -> webClient.post(8080, "localhost", "/")
+                        .putHeader("If-None-Match", first.getHeader("ETag"))
+                        .sendBuffer(Buffer.buffer("no touching")))
+                .onComplete(vertxTestContext.succeeding(second -> vertxTestContext.verify(() -> {
+                    assertThat(second.statusCode()).isEqualTo(412);
+                    assertThat(second.body()).isNull();
+                    vertxTestContext.completeNow();
+                })));
+    }
 }
@@ -0,0 +1,88 @@
+package nl.kabisa.vertx.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+import com.google.common.base.Ticker;
+
+import io.vertx.core.buffer.Buffer;
+
+class ResponseCacheTest {
+
+    private static final Buffer REQUEST = Buffer.buffer("no touching");
+    private static final Buffer RESPONSE = Buffer.buffer("NO TOUCHING");
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    @DisplayName("Returns responses to equal requests")
+    public void returnsResponses() {
+        var responseCache = new ResponseCache(1024, 60_000);
+
+        var entry = responseCache.put(REQUEST, RESPONSE);
+
+        assertThat(responseCache.get(Buffer.buffer("no touching"))).isEqualTo(entry);
+        assertThat(responseCache.get(Buffer.buffer("touching"))).isNull();
+        assertThat(entry.response()).isEqualTo(RESPONSE);
+    }
+
+    @Test
+    @DisplayName("Derives entity tags from the response")
+    public void derivesEntityTags() {
+        var responseCache = new ResponseCache(1024, 60_000);
+
+        var first = responseCache.put(REQUEST, RESPONSE);
+        var second = responseCache.put(Buffer.buffer("NO TOUCHING"), RESPONSE);
+        var third = responseCache.put(Buffer.buffer("touching"), Buffer.buffer("TOUCHING"));
+
+        assertThat(first.etag()).startsWith("W/\"").endsWith("\"").isEqualTo(second.etag());
+        assertThat(third.etag()).isNotEqualTo(first.etag());
+    }
+
+    @Test
+    @DisplayName("Evicts entries once the cache holds too many bytes")
+    public void evictsByWeight() {
+        var responseCache = new ResponseCache(100, 60_000);
+
+        for (var i = 0; i < 10; ++i) {
+            responseCache.put(Buffer.buffer("request " + i), Buffer.buffer("REQUEST " + i));
+        }
+
+        assertThat(responseCache.size()).isLessThan(10);
+        assertThat(responseCache.get(Buffer.buffer("request 9"))).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Expires entries after their time to live")
+    public void expiresEntries() {
+        var responseCache = new ResponseCache(1024, 1_000, ticker);
+
+        responseCache.put(REQUEST, RESPONSE);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThat(responseCache.get(REQUEST)).isNotNull();
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(responseCache.get(REQUEST)).isNull();
+    }
+
+    @Test
+    @DisplayName("Matches If-None-Match headers")
+    public void matchesIfNoneMatch() {
+        assertThat(ResponseCache.matches("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("\"xyz\", W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("*", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("\"xyz\"", "\"abc\"")).isFalse();
+        assertThat(ResponseCache.matches(null, "\"abc\"")).isFalse();
+        assertThat(ResponseCache.matches("\"abc\"", "W/\"abc\"")).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package nl.kabisa.vertx.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import nl.kabisa.vertx.load.LoadGeneratorOptions.Mode;
+
+@ExtendWith(VertxExtension.class)
+class LoadGeneratorTest {
+
+    private static final int PORT = 8081;
+
+    private int statusCode = 200;
+
+    @BeforeEach
+    public void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.createHttpServer()
+                .requestHandler(request -> request.body().onSuccess(body -> request.response().setStatusCode(statusCode).end(body)))
+                .listen(PORT)
+                .onComplete(vertxTestContext.succeedingThenComplete());
+    }
+
+    @Test
+    @DisplayName("Sends requests at the configured rate in open mode")
+    public void sendsRequestsAtRate(Vertx vertx, VertxTestContext vertxTestContext) {
+        var options = new LoadGeneratorOptions()
+                .setPort(PORT)
+                .setMode(Mode.OPEN)
+                .setRate(1000)
+                .setWarmup(100)
+                .setDuration(200);
+
+        new LoadGenerator(vertx, options).run().onComplete(vertxTestContext.succeeding(result -> vertxTestContext.verify(() -> {
+            assertThat(result.requests()).isEqualTo(200);
+            assertThat(result.errors()).isZero();
+            assertThat(result.throughput()).isEqualTo(1000.0);
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Keeps sending requests in closed mode")
+    public void sendsRequestsInClosedMode(Vertx vertx, VertxTestContext vertxTestContext) {
+        var options = new LoadGeneratorOptions()
+                .setPort(PORT)
+                .setMode(Mode.CLOSED)
+                .setConcurrency(4)
+                .setWarmup(0)
+                .setDuration(200);
+
+        new LoadGenerator(vertx, options).run().onComplete(vertxTestContext.succeeding(result -> vertxTestContext.verify(() -> {
+            assertThat(result.histogram().getTotalCount()).isPositive();
+            assertThat(result.errors()).isZero();
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Counts responses with other status codes than 200 as errors")
+    public void countsErrors(Vertx vertx, VertxTestContext vertxTestContext) {
+        statusCode = 500;
+        var options = new LoadGeneratorOptions()
+                .setPort(PORT)
+                .setRate(100)
+                .setWarmup(0)
+                .setDuration(100);
+
+        new LoadGenerator(vertx, options).run().onComplete(vertxTestContext.succeeding(result -> vertxTestContext.verify(() -> {
+            assertThat(result.errors()).isEqualTo(10);
+            assertThat(result.histogram().getTotalCount()).isZero();
+            vertxTestContext.completeNow();
+        })));
+    }
+}
@@ -0,0 +1,55 @@
+package nl.kabisa.vertx.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+@ExtendWith(VertxExtension.class)
+class PipelineMetricsTest {
+
+    @Test
+    @DisplayName("Shares a single instance per Vert.x instance")
+    public void sharesInstance(Vertx vertx) {
+        assertThat(PipelineMetrics.shared(vertx)).isSameAs(PipelineMetrics.shared(vertx));
+    }
+
+    @Test
+    @DisplayName("Backs gauges with the same tags by the same value")
+    public void sharesGaugeValues(Vertx vertx) {
+        var metrics = PipelineMetrics.shared(vertx);
+
+        metrics.openSockets("server", "auth").incrementAndGet();
+        metrics.openSockets("server", "auth").incrementAndGet();
+        metrics.openSockets("server", "echo").incrementAndGet();
+
+        var gauge = metrics.registry().get(PipelineMetrics.OPEN_SOCKETS).tags("side", "server", "service", "auth").gauge();
+        assertThat(gauge.value()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Times failed operations")
+    public void timesFailedOperations(Vertx vertx, VertxTestContext vertxTestContext) {
+        var timer = PipelineMetrics.shared(vertx).stageTimer("test");
+
+        PipelineMetrics.time(timer, () -> Future.failedFuture("failure"))
+                .onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+                    assertThat(timer.count()).isEqualTo(1);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Scrapes metrics in the Prometheus format")
+    public void scrapesMetrics(Vertx vertx) {
+        var metrics = PipelineMetrics.shared(vertx);
+        metrics.tokenCounter("issue", "ok").increment();
+
+        assertThat(metrics.scrape()).contains("pipeline_tokens_total{operation=\"issue\",outcome=\"ok\",} 1.0");
+    }
+}
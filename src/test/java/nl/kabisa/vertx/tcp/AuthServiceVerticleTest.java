@@ -5,16 +5,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
 
 @ExtendWith(VertxExtension.class)
 class AuthServiceVerticleTest {
 
-    private static final String AUTHENTICATED_CLIENTS_MAP = "AUTHENTICATED_CLIENTS_MAP";
     private static final int PORT = 3001;
 
     private final AuthServiceVerticle authServiceVerticle = new AuthServiceVerticle();
@@ -34,11 +36,12 @@ class AuthServiceVerticleTest {
         netClient.connect(PORT, "localhost", asyncSocket -> {
             vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
             var socket = asyncSocket.result();
-            socket.handler(buffer -> {
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
                 vertxTestContext.verify(() -> assertThat(buffer.getByte(0)).isEqualTo((byte) 1));
                 vertxTestContext.completeNow();
-            });
-            socket.write(Buffer.buffer(new byte[] { 1, 2, 3, 4 }));
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Buffer.buffer(new byte[] { 1, 2, 3, 4 })).toBuffer());
         });
     }
 
@@ -48,46 +51,67 @@ class AuthServiceVerticleTest {
         netClient.connect(PORT, "localhost", asyncSocket -> {
             vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
             var socket = asyncSocket.result();
-            socket.handler(buffer -> {
-                vertxTestContext.verify(() -> assertThat(buffer.getByte(0)).isEqualTo((byte) 0));
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
+                vertxTestContext.verify(() -> {
+                    assertThat(buffer.getByte(0)).isEqualTo((byte) 0);
+                    assertThat(PipelineMetrics.shared(vertx).tokenCounter("issue", "nok").count()).isEqualTo(1.0);
+                });
                 vertxTestContext.completeNow();
-            });
-            socket.write(Buffer.buffer(new byte[] { 1, 2, 3 }));
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Buffer.buffer(new byte[] { 1, 2, 3 })).toBuffer());
         });
     }
 
     @Test
     @DisplayName("Returns authenticated identifier")
     public void returnsAuthenticatedIdentifier(Vertx vertx, VertxTestContext vertxTestContext) {
-        vertx.sharedData().getAsyncMap(AUTHENTICATED_CLIENTS_MAP, asyncMap -> {
-            vertxTestContext.verify(() -> assertThat(asyncMap.succeeded()).isTrue());
-            var map = asyncMap.result();
-            map.size(asyncSize ->
-                    vertxTestContext.verify(() -> {
-                        assertThat(asyncSize.succeeded()).isTrue();
-                        assertThat(asyncSize.result()).isZero();
-                    }));
-        });
+        var tokenStore = TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL);
+        assertThat(tokenStore.size()).isZero();
+
         netClient.connect(PORT, "localhost", asyncSocket -> {
             vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
             var socket = asyncSocket.result();
-            socket.handler(buffer -> {
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
                 vertxTestContext.verify(() -> assertThat(buffer.getByte(0)).isEqualTo((byte) 1));
 
-                var id = buffer.getString(1, buffer.length());
-                vertx.sharedData().<String, Boolean> getAsyncMap(AUTHENTICATED_CLIENTS_MAP, asyncMap -> {
-                    vertxTestContext.verify(() -> assertThat(asyncMap.succeeded()).isTrue());
-                    var map = asyncMap.result();
-                    map.get(id, asyncResult -> {
-                        vertxTestContext.verify(() -> {
-                            assertThat(asyncResult.succeeded()).isTrue();
-                            assertThat(asyncResult.result()).isTrue();
-                        });
-                        vertxTestContext.completeNow();
-                    });
+                var id = TokenStore.decode(buffer.getBuffer(1, buffer.length()));
+                vertxTestContext.verify(() -> {
+                    assertThat(buffer.length()).isEqualTo(1 + RandomTokenGenerator.LENGTH);
+                    assertThat(tokenStore.contains(id)).isTrue();
                 });
-            });
-            socket.write(Buffer.buffer(new byte[] { 1, 2, 3, 4 }));
+                vertxTestContext.completeNow();
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Buffer.buffer(new byte[] { 1, 2, 3, 4 })).toBuffer());
         });
     }
+
+    @Test
+    @DisplayName("Accepts configured secret on configured port")
+    public void acceptsConfiguredSecret(Vertx vertx, VertxTestContext vertxTestContext) {
+        var config = new JsonObject().put("authPort", 3011).put("authSecret", new byte[] { 5, 6, 7, 8, 9 });
+        vertx.deployVerticle(new AuthServiceVerticle(), new DeploymentOptions().setConfig(config))
+                .compose(id -> netClient.connect(3011, "localhost"))
+                .onComplete(vertxTestContext.succeeding(socket -> {
+                    socket.handler(new FrameParser(frame -> {
+                        vertxTestContext.verify(() -> assertThat(frame.payload().getByte(0)).isEqualTo((byte) 1));
+                        vertxTestContext.completeNow();
+                    }, vertxTestContext::failNow));
+                    socket.write(new Frame(1, Buffer.buffer(new byte[] { 5, 6, 7, 8, 9 })).toBuffer());
+                }));
+    }
+
+    @Test
+    @DisplayName("Closes connections beyond the maximum")
+    public void closesConnectionsBeyondMaximum(Vertx vertx, VertxTestContext vertxTestContext) {
+        var config = new JsonObject().put("authPort", 3021).put("serverMaxConnections", 1);
+        vertx.deployVerticle(new AuthServiceVerticle(), new DeploymentOptions().setConfig(config))
+                .compose(id -> netClient.connect(3021, "localhost"))
+                .compose(first -> netClient.connect(3021, "localhost"))
+                .onComplete(vertxTestContext.succeeding(second -> second.closeHandler(v -> vertxTestContext.verify(() -> {
+                    assertThat(PipelineMetrics.shared(vertx).rejectedSockets("auth").count()).isEqualTo(1.0);
+                    vertxTestContext.completeNow();
+                }))));
+    }
 }
@@ -0,0 +1,54 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+
+import io.vertx.core.buffer.Buffer;
+
+class BatchTest {
+
+    private static final Buffer TOKEN = Buffer.buffer("token");
+
+    @Test
+    @DisplayName("Decodes items of an encoded request")
+    public void decodesItems() {
+        var items = List.of(Buffer.buffer("first"), Buffer.buffer(), Buffer.buffer("third"));
+
+        var request = Batch.request(TOKEN, items);
+
+        assertThat(Batch.isBatch(request)).isTrue();
+        assertThat(request.getBuffer(1, 1 + TOKEN.length())).isEqualTo(TOKEN);
+        assertThat(Batch.items(request, 1 + TOKEN.length())).isEqualTo(items);
+    }
+
+    @Test
+    @DisplayName("Does not mistake a single request for a batch")
+    public void recognizesSingleRequests() {
+        var request = Batch.single(Buffer.buffer(new byte[] { Batch.MARKER, 1, 2, 3 }), Buffer.buffer("input"));
+
+        assertThat(Batch.isSingle(request)).isTrue();
+        assertThat(Batch.isBatch(request)).isFalse();
+        assertThat(Batch.isBatch(Buffer.buffer())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Rejects truncated items")
+    public void rejectsTruncatedItems() {
+        var request = Batch.request(TOKEN, List.of(Buffer.buffer("first"), Buffer.buffer("second")));
+        var truncated = request.getBuffer(0, request.length() - 1);
+
+        assertThatThrownBy(() -> Batch.items(truncated, 1 + TOKEN.length())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Rejects trailing bytes")
+    public void rejectsTrailingBytes() {
+        var request = Batch.request(TOKEN, List.of(Buffer.buffer("first"))).appendByte((byte) 0);
+
+        assertThatThrownBy(() -> Batch.items(request, 1 + TOKEN.length())).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,72 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+@ExtendWith(VertxExtension.class)
+class BatcherTest {
+
+    private final List<List<Integer>> batches = new ArrayList<>();
+
+    private Future<List<Integer>> negate(List<Integer> batch) {
+        batches.add(batch);
+        return Future.succeededFuture(batch.stream().map(i -> -i).toList());
+    }
+
+    @Test
+    @DisplayName("Sends a batch once it is full")
+    public void sendsFullBatch(Vertx vertx, VertxTestContext vertxTestContext) {
+        var batcher = new Batcher<Integer, Integer>(vertx, 2, 60_000, this::negate);
+
+        Future.all(batcher.add(1), batcher.add(2)).onComplete(vertxTestContext.succeeding(all -> vertxTestContext.verify(() -> {
+            assertThat(all.<Integer> list()).containsExactly(-1, -2);
+            assertThat(batches).containsExactly(List.of(1, 2));
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Sends a partial batch after the maximum delay")
+    public void sendsPartialBatchAfterDelay(Vertx vertx, VertxTestContext vertxTestContext) {
+        var batcher = new Batcher<Integer, Integer>(vertx, 10, 10, this::negate);
+
+        Future.all(batcher.add(1), batcher.add(2), batcher.add(3)).onComplete(vertxTestContext.succeeding(all -> vertxTestContext.verify(() -> {
+            assertThat(all.<Integer> list()).containsExactly(-1, -2, -3);
+            assertThat(batches).containsExactly(List.of(1, 2, 3));
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Batches requests added in the same event loop iteration without a delay")
+    public void batchesWithoutDelay(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.runOnContext(v -> {
+            var batcher = new Batcher<Integer, Integer>(vertx, 10, 0, this::negate);
+
+            Future.all(batcher.add(1), batcher.add(2)).onComplete(vertxTestContext.succeeding(all -> vertxTestContext.verify(() -> {
+                assertThat(batches).containsExactly(List.of(1, 2));
+                vertxTestContext.completeNow();
+            })));
+        });
+    }
+
+    @Test
+    @DisplayName("Fails all requests of a failed batch")
+    public void failsAllRequests(Vertx vertx, VertxTestContext vertxTestContext) {
+        var batcher = new Batcher<Integer, Integer>(vertx, 2, 60_000, batch -> Future.failedFuture("failure"));
+        var checkpoint = vertxTestContext.checkpoint(2);
+
+        batcher.add(1).onComplete(vertxTestContext.failing(cause -> checkpoint.flag()));
+        batcher.add(2).onComplete(vertxTestContext.failing(cause -> checkpoint.flag()));
+    }
+}
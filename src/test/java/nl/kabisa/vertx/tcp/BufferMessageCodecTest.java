@@ -0,0 +1,50 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+@ExtendWith(VertxExtension.class)
+class BufferMessageCodecTest {
+
+    private final BufferMessageCodec<EchoRequest> codec =
+            new BufferMessageCodec<>("echo-request", EchoRequest::toBuffer, EchoRequest::fromBuffer);
+
+    @Test
+    @DisplayName("Passes local messages on without copying")
+    public void passesLocalMessagesOn() {
+        var message = new EchoRequest(Buffer.buffer("body"));
+
+        assertThat(codec.transform(message)).isSameAs(message);
+    }
+
+    @Test
+    @DisplayName("Decodes messages encoded to the wire")
+    public void decodesEncodedMessages() {
+        var wire = Buffer.buffer("prefix");
+        codec.encodeToWire(wire, new EchoRequest(Buffer.buffer("body"), 1234));
+        wire.appendString("suffix");
+
+        assertThat(codec.decodeFromWire(6, wire)).isEqualTo(new EchoRequest(Buffer.buffer("body"), 1234));
+    }
+
+    @Test
+    @DisplayName("Registers echo codecs only once")
+    public void registersEchoCodecsOnce(Vertx vertx, VertxTestContext vertxTestContext) {
+        BufferMessageCodec.registerEchoCodecs(vertx);
+        BufferMessageCodec.registerEchoCodecs(vertx);
+
+        var body = new EchoRequest(Buffer.buffer("body"));
+        vertx.eventBus().<EchoRequest> consumer("address", message -> {
+            vertxTestContext.verify(() -> assertThat(message.body()).isSameAs(body));
+            vertxTestContext.completeNow();
+        });
+        vertx.eventBus().send("address", body);
+    }
+}
@@ -0,0 +1,91 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+class CircuitBreakerTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private Future<String> succeed() {
+        calls.incrementAndGet();
+        return Future.succeededFuture("ok");
+    }
+
+    private Future<String> fail() {
+        calls.incrementAndGet();
+        return Future.failedFuture("nok");
+    }
+
+    @Test
+    @DisplayName("Opens after consecutive failures and rejects requests")
+    public void opensAfterFailures() {
+        var circuitBreaker = new CircuitBreaker("test", 2, 60_000);
+
+        circuitBreaker.execute(this::fail);
+        circuitBreaker.execute(this::fail);
+        var result = circuitBreaker.execute(this::succeed);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(result.cause()).isInstanceOf(RejectedException.class);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Stays closed when requests time out because of the caller's deadline")
+    public void ignoresCallerDeadlines() {
+        var circuitBreaker = new CircuitBreaker("test", 2, 60_000);
+
+        for (var i = 0; i < 3; ++i) {
+            circuitBreaker.execute(() -> Future.failedFuture(new DeadlineExceededException("timeout", true)));
+        }
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Resets failure count after a success")
+    public void resetsAfterSuccess() {
+        var circuitBreaker = new CircuitBreaker("test", 2, 60_000);
+
+        circuitBreaker.execute(this::fail);
+        circuitBreaker.execute(this::succeed);
+        circuitBreaker.execute(this::fail);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Lets a single trial request through after the reset timeout")
+    public void letsTrialRequestThrough() {
+        var circuitBreaker = new CircuitBreaker("test", 1, 0);
+        circuitBreaker.execute(this::fail);
+
+        var trial = Promise.<String>promise();
+        circuitBreaker.execute(trial::future);
+        var concurrent = circuitBreaker.execute(this::succeed);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(concurrent.cause()).isInstanceOf(RejectedException.class);
+
+        trial.complete("ok");
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Opens again if the trial request fails")
+    public void reopensIfTrialFails() {
+        var circuitBreaker = new CircuitBreaker("test", 1, 60_000);
+        circuitBreaker.execute(this::fail);
+
+        assertThat(circuitBreaker.execute(this::succeed).cause()).isInstanceOf(RejectedException.class);
+        assertThat(calls).hasValue(1);
+    }
+}
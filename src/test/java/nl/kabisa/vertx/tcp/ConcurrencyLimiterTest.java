@@ -0,0 +1,92 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+class ConcurrencyLimiterTest {
+
+    private final List<Promise<String>> promises = new ArrayList<>();
+
+    private Future<String> hold() {
+        var promise = Promise.<String>promise();
+        promises.add(promise);
+        return promise.future();
+    }
+
+    @Test
+    @DisplayName("Rejects requests beyond the limit")
+    public void rejectsBeyondLimit() {
+        var limiter = new ConcurrencyLimiter("test", 2, 10, 60_000);
+
+        limiter.execute(this::hold);
+        limiter.execute(this::hold);
+        var rejected = limiter.execute(this::hold);
+
+        assertThat(rejected.cause()).isInstanceOf(RejectedException.class);
+        assertThat(promises).hasSize(2);
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Increases the limit on fast successes while in use")
+    public void increasesLimit() {
+        var limiter = new ConcurrencyLimiter("test", 2, 10, 60_000);
+
+        limiter.execute(this::hold);
+        limiter.execute(this::hold);
+        promises.forEach(promise -> promise.complete("ok"));
+
+        assertThat(limiter.limit()).isEqualTo(3);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Decreases the limit when a request times out")
+    public void decreasesLimitOnTimeout() {
+        var limiter = new ConcurrencyLimiter("test", 10, 10, 60_000);
+
+        limiter.execute(() -> Future.failedFuture(new DeadlineExceededException("timeout")));
+
+        assertThat(limiter.limit()).isEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("Keeps the limit when the caller's deadline runs out")
+    public void keepsLimitOnCallerDeadline() {
+        var limiter = new ConcurrencyLimiter("test", 10, 10, 60_000);
+
+        limiter.execute(() -> Future.failedFuture(new DeadlineExceededException("timeout", true)));
+
+        assertThat(limiter.limit()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Decreases the limit when latency exceeds the threshold")
+    public void decreasesLimitOnHighLatency() throws InterruptedException {
+        var limiter = new ConcurrencyLimiter("test", 10, 10, 1);
+
+        limiter.execute(this::hold);
+        Thread.sleep(5);
+        promises.get(0).complete("ok");
+
+        assertThat(limiter.limit()).isEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("Ignores requests rejected by a circuit breaker")
+    public void ignoresRejections() {
+        var limiter = new ConcurrencyLimiter("test", 1, 10, 60_000);
+
+        limiter.execute(() -> Future.failedFuture(new RejectedException("open")));
+
+        assertThat(limiter.limit()).isEqualTo(1);
+        assertThat(limiter.inFlight()).isZero();
+    }
+}
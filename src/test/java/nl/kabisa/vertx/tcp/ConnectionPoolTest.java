@@ -0,0 +1,202 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+@ExtendWith(VertxExtension.class)
+class ConnectionPoolTest {
+
+    private static final int PORT = 3003;
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<Runnable> heldResponses = new ArrayList<>();
+
+    private NetClient netClient;
+    private NetServer netServer;
+    private int holdResponses;
+
+    @BeforeEach
+    public void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+        netClient = vertx.createNetClient();
+        netServer = vertx.createNetServer();
+        netServer.connectHandler(socket -> {
+            connections.incrementAndGet();
+            socket.handler(new FrameParser(frame -> respond(socket, frame), vertxTestContext::failNow));
+        });
+        netServer.listen(PORT, "localhost").onComplete(vertxTestContext.succeedingThenComplete());
+    }
+
+    private void respond(NetSocket socket, Frame frame) {
+        heldResponses.add(() -> socket.write(frame.toBuffer()));
+        if (heldResponses.size() >= holdResponses) {
+            for (var i = heldResponses.size() - 1; i >= 0; --i) {
+                heldResponses.get(i).run();
+            }
+            heldResponses.clear();
+        }
+    }
+
+    @Test
+    @DisplayName("Reuses connection for consecutive requests")
+    public void reusesConnection(Vertx vertx, VertxTestContext vertxTestContext) {
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", new ConnectionPoolOptions());
+
+        pool.request(Buffer.buffer("first"))
+                .compose(first -> pool.request(Buffer.buffer("second")))
+                .onComplete(vertxTestContext.succeeding(second -> vertxTestContext.verify(() -> {
+                    assertThat(second).isEqualTo(Buffer.buffer("second"));
+                    assertThat(connections).hasValue(1);
+                    assertThat(pool.size()).isEqualTo(1);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Matches pipelined responses to their requests")
+    public void matchesPipelinedResponses(Vertx vertx, VertxTestContext vertxTestContext) {
+        holdResponses = 10;
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", new ConnectionPoolOptions().setMaxSize(1));
+
+        var responses = IntStream.range(0, 10)
+                .mapToObj(i -> pool.request(Buffer.buffer("request " + i)))
+                .toList();
+
+        Future.all(responses).onComplete(vertxTestContext.succeeding(all -> vertxTestContext.verify(() -> {
+            for (var i = 0; i < 10; ++i) {
+                assertThat(responses.get(i).result()).isEqualTo(Buffer.buffer("request " + i));
+            }
+            assertThat(connections).hasValue(1);
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Opens another connection once open connections are full")
+    public void opensConnectionWhenFull(Vertx vertx, VertxTestContext vertxTestContext) {
+        holdResponses = 2;
+        var options = new ConnectionPoolOptions().setMaxSize(2).setMaxInFlight(1);
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", options);
+
+        Future.all(pool.request(Buffer.buffer("first")), pool.request(Buffer.buffer("second")))
+                .onComplete(vertxTestContext.succeeding(all -> vertxTestContext.verify(() -> {
+                    assertThat(connections).hasValue(2);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Fails fast when the wait queue is full")
+    public void failsWhenWaitQueueIsFull(Vertx vertx, VertxTestContext vertxTestContext) {
+        var options = new ConnectionPoolOptions().setMaxWaitQueueSize(0);
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", options);
+
+        pool.request(Buffer.buffer("request")).onComplete(vertxTestContext.failingThenComplete());
+    }
+
+    @Test
+    @DisplayName("Applies new limits")
+    public void appliesNewOptions(Vertx vertx, VertxTestContext vertxTestContext) {
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", new ConnectionPoolOptions());
+        pool.setOptions(new ConnectionPoolOptions().setMaxWaitQueueSize(0));
+
+        pool.request(Buffer.buffer("request")).onComplete(vertxTestContext.failingThenComplete());
+    }
+
+    @Test
+    @DisplayName("Evicts idle connections")
+    public void evictsIdleConnections(Vertx vertx, VertxTestContext vertxTestContext) {
+        var options = new ConnectionPoolOptions().setIdleTimeout(0).setEvictionInterval(10);
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", options);
+
+        pool.request(Buffer.buffer("request")).onComplete(vertxTestContext.succeeding(response ->
+                vertx.setPeriodic(10, id -> {
+                    if (pool.size() == 0) {
+                        vertxTestContext.completeNow();
+                    }
+                })));
+    }
+
+    @Test
+    @DisplayName("Fails requests that are not answered in time")
+    public void failsRequestsAfterTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+        holdResponses = 2;
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", new ConnectionPoolOptions());
+
+        pool.request(Buffer.buffer("request"), 50).onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+            assertThat(cause).isInstanceOf(DeadlineExceededException.class);
+            assertThat(pool.inFlight()).isZero();
+            vertxTestContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Replaces connections on which requests keep timing out")
+    public void replacesConnectionAfterConsecutiveTimeouts(Vertx vertx, VertxTestContext vertxTestContext) {
+        holdResponses = 3;
+        var options = new ConnectionPoolOptions().setMaxConsecutiveTimeouts(2);
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", options);
+
+        pool.request(Buffer.buffer("first"), 50)
+                .recover(cause -> pool.request(Buffer.buffer("second"), 50))
+                .recover(cause -> pool.request(Buffer.buffer("third")))
+                .onComplete(vertxTestContext.succeeding(third -> vertxTestContext.verify(() -> {
+                    assertThat(third).isEqualTo(Buffer.buffer("third"));
+                    assertThat(connections).hasValue(2);
+                    assertThat(pool.size()).isEqualTo(1);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Fails waiting requests when another connection can't be opened")
+    public void failsWaitingRequestsWhenConnectFails(Vertx vertx, VertxTestContext vertxTestContext) {
+        holdResponses = 2;
+        var failingNetClient = mock(NetClient.class);
+        when(failingNetClient.connect(PORT, "localhost"))
+                .thenAnswer(invocation -> netClient.connect(PORT, "localhost"))
+                .thenReturn(Future.failedFuture("Connection refused"));
+        var options = new ConnectionPoolOptions().setMaxSize(2).setMaxInFlight(1);
+        var pool = new ConnectionPool(vertx, failingNetClient, PORT, "localhost", options);
+
+        pool.request(Buffer.buffer("first"));
+        vertx.setTimer(100, id -> pool.request(Buffer.buffer("second"), 5_000)
+                .onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+                    assertThat(cause).isNotInstanceOf(DeadlineExceededException.class).hasMessage("Connection refused");
+                    assertThat(pool.size()).isEqualTo(1);
+                    assertThat(pool.inFlight()).isEqualTo(1);
+                    vertxTestContext.completeNow();
+                }))));
+    }
+
+    @Test
+    @DisplayName("Fails requests that wait too long for a connection")
+    public void failsWaitingRequestsAfterTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+        holdResponses = 2;
+        var options = new ConnectionPoolOptions().setMaxSize(1).setMaxInFlight(1);
+        var pool = new ConnectionPool(vertx, netClient, PORT, "localhost", options);
+
+        pool.request(Buffer.buffer("first"));
+        pool.request(Buffer.buffer("second"), 50).onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+            assertThat(cause).isInstanceOf(DeadlineExceededException.class);
+            assertThat(pool.inFlight()).isEqualTo(1);
+            vertxTestContext.completeNow();
+        })));
+    }
+}
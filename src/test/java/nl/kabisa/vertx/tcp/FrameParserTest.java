@@ -0,0 +1,56 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+
+import io.vertx.core.buffer.Buffer;
+
+class FrameParserTest {
+
+    private final List<Frame> frames = new ArrayList<>();
+    private final List<Throwable> exceptions = new ArrayList<>();
+
+    private final FrameParser frameParser = new FrameParser(16, frames::add, exceptions::add);
+
+    @Test
+    @DisplayName("Parses frame split over several buffers")
+    public void parsesSplitFrame() {
+        var buffer = new Frame(42, Buffer.buffer("payload")).toBuffer();
+
+        frameParser.handle(buffer.getBuffer(0, 3));
+        frameParser.handle(buffer.getBuffer(3, 10));
+        frameParser.handle(buffer.getBuffer(10, buffer.length()));
+
+        assertThat(frames).containsExactly(new Frame(42, Buffer.buffer("payload")));
+    }
+
+    @Test
+    @DisplayName("Parses frames coalesced into a single buffer")
+    public void parsesCoalescedFrames() {
+        var buffer = Buffer.buffer()
+                .appendBuffer(new Frame(1, Buffer.buffer("first")).toBuffer())
+                .appendBuffer(new Frame(2, Buffer.buffer()).toBuffer())
+                .appendBuffer(new Frame(3, Buffer.buffer("third")).toBuffer());
+
+        frameParser.handle(buffer);
+
+        assertThat(frames).containsExactly(
+                new Frame(1, Buffer.buffer("first")),
+                new Frame(2, Buffer.buffer()),
+                new Frame(3, Buffer.buffer("third")));
+    }
+
+    @Test
+    @DisplayName("Rejects frames exceeding the maximum payload length")
+    public void rejectsOversizedFrames() {
+        frameParser.handle(new Frame(1, Buffer.buffer("this payload is too long")).toBuffer());
+        frameParser.handle(new Frame(2, Buffer.buffer("ignored")).toBuffer());
+
+        assertThat(frames).isEmpty();
+        assertThat(exceptions).hasSize(1);
+    }
+}
@@ -0,0 +1,46 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.*;
+
+class HmacTokenGeneratorTest {
+
+    private static final byte[] SECRET = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    private final HmacTokenGenerator tokenGenerator = new HmacTokenGenerator(SECRET, 60_000);
+
+    @Test
+    @DisplayName("Verifies tokens it generated")
+    public void verifiesGeneratedTokens() {
+        var token = tokenGenerator.generate();
+
+        assertThat(token.length()).isEqualTo(HmacTokenGenerator.LENGTH);
+        assertThat(tokenGenerator.verify(token)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Rejects tampered tokens")
+    public void rejectsTamperedTokens() {
+        var token = tokenGenerator.generate();
+        token.setLong(0, token.getLong(0) + 1);
+
+        assertThat(tokenGenerator.verify(token)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Rejects tokens signed with another secret")
+    public void rejectsTokensWithOtherSecret() {
+        var token = new HmacTokenGenerator(new byte[] { 8, 7, 6, 5, 4, 3, 2, 1 }, 60_000).generate();
+
+        assertThat(tokenGenerator.verify(token)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Rejects expired tokens")
+    public void rejectsExpiredTokens() {
+        var token = new HmacTokenGenerator(SECRET, -1).generate();
+
+        assertThat(tokenGenerator.verify(token)).isFalse();
+    }
+}
@@ -0,0 +1,67 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+@ExtendWith(VertxExtension.class)
+class LocalServiceTest {
+
+    private static final String ADDRESS = "test.service";
+
+    @BeforeEach
+    public void setUp(Vertx vertx) {
+        BufferMessageCodec.registerEchoCodecs(vertx);
+    }
+
+    @Test
+    @DisplayName("Is deployed while any verticle is registered")
+    public void tracksRegistrations(Vertx vertx) {
+        var localService = new LocalService(vertx, ADDRESS);
+        assertThat(localService.isDeployed()).isFalse();
+
+        LocalService.register(vertx, ADDRESS);
+        LocalService.register(vertx, ADDRESS);
+        LocalService.unregister(vertx, ADDRESS);
+        assertThat(localService.isDeployed()).isTrue();
+
+        LocalService.unregister(vertx, ADDRESS);
+        assertThat(localService.isDeployed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Passes requests and responses on without copying them")
+    public void passesBuffersOn(Vertx vertx, VertxTestContext vertxTestContext) {
+        var request = Buffer.buffer("request");
+        var response = Buffer.buffer("response");
+        vertx.eventBus().<Buffer> localConsumer(ADDRESS, message -> {
+            vertxTestContext.verify(() -> assertThat(message.body()).isSameAs(request));
+            message.reply(response, LocalService.deliveryOptions());
+        });
+
+        new LocalService(vertx, ADDRESS).echo(request, 1_000)
+                .onComplete(vertxTestContext.succeeding(result -> vertxTestContext.verify(() -> {
+                    assertThat(result).isSameAs(response);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Fails requests that are not answered in time")
+    public void failsRequestsAfterTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+        vertx.eventBus().<Buffer> localConsumer(ADDRESS, Message::body);
+
+        new LocalService(vertx, ADDRESS).authenticate(Buffer.buffer("credentials"), 50)
+                .onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+                    assertThat(cause).isInstanceOf(DeadlineExceededException.class);
+                    vertxTestContext.completeNow();
+                })));
+    }
+}
@@ -0,0 +1,69 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.*;
+
+class NearCacheTest {
+
+    private static final UUID FIRST = UUID.randomUUID();
+    private static final UUID SECOND = UUID.randomUUID();
+
+    private static final long FAR_FUTURE = Long.MAX_VALUE;
+
+    @Test
+    @DisplayName("Contains tokens that were put")
+    public void containsTokens() {
+        var nearCache = new NearCache(10, 60_000);
+
+        nearCache.put(FIRST, FAR_FUTURE);
+
+        assertThat(nearCache.contains(FIRST)).isTrue();
+        assertThat(nearCache.contains(SECOND)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Does not keep tokens beyond their expiration time")
+    public void doesNotOutliveToken() {
+        var nearCache = new NearCache(10, 60_000);
+
+        nearCache.put(FIRST, System.currentTimeMillis());
+
+        assertThat(nearCache.contains(FIRST)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Does not keep tokens beyond its own time to live")
+    public void expiresEntries() {
+        var nearCache = new NearCache(10, 0);
+
+        nearCache.put(FIRST, FAR_FUTURE);
+
+        assertThat(nearCache.contains(FIRST)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Drops invalidated tokens")
+    public void dropsInvalidatedTokens() {
+        var nearCache = new NearCache(10, 60_000);
+
+        nearCache.put(FIRST, FAR_FUTURE);
+        nearCache.invalidate(FIRST);
+
+        assertThat(nearCache.contains(FIRST)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Is bounded in size")
+    public void isBounded() {
+        var nearCache = new NearCache(1, 60_000);
+
+        nearCache.put(FIRST, FAR_FUTURE);
+        nearCache.put(SECOND, FAR_FUTURE);
+
+        assertThat(nearCache.size()).isEqualTo(1);
+        assertThat(nearCache.contains(SECOND)).isTrue();
+    }
+}
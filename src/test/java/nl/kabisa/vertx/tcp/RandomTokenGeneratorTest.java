@@ -0,0 +1,21 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.*;
+
+class RandomTokenGeneratorTest {
+
+    private final RandomTokenGenerator tokenGenerator = new RandomTokenGenerator();
+
+    @Test
+    @DisplayName("Generates distinct tokens of 16 bytes")
+    public void generatesDistinctTokens() {
+        var tokens = IntStream.range(0, 1000).mapToObj(i -> tokenGenerator.generate()).toList();
+
+        assertThat(tokens).allSatisfy(token -> assertThat(token.length()).isEqualTo(16));
+        assertThat(tokens).doesNotHaveDuplicates();
+    }
+}
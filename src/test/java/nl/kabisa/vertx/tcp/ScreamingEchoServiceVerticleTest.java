@@ -2,19 +2,28 @@ package nl.kabisa.vertx.tcp;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import nl.kabisa.vertx.metrics.PipelineMetrics;
 
 @ExtendWith(VertxExtension.class)
 class ScreamingEchoServiceVerticleTest {
 
-    private static final String IDENTIFIER = "abcdefghijklmnopqrstuvwxyz0123456789";
+    private static final UUID IDENTIFIER = UUID.fromString("01234567-89ab-cdef-0123-456789abcdef");
 
     private final ScreamingEchoServiceVerticle screamingEchoServiceVerticle = new ScreamingEchoServiceVerticle();
 
@@ -33,53 +42,223 @@ class ScreamingEchoServiceVerticleTest {
         netClient.connect(3002, "localhost", asyncSocket -> {
             vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
             var socket = asyncSocket.result();
-            socket.handler(buffer -> {
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
                 vertxTestContext.verify(() -> {
                     assertThat(buffer.length()).isEqualTo(1);
                     assertThat(buffer.getByte(0)).isEqualTo((byte) 0);
                 });
                 vertxTestContext.completeNow();
-            });
-            socket.write(Buffer.buffer(IDENTIFIER + "input"));
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("input"))).toBuffer());
         });
     }
 
     @Test
     @DisplayName("Returns OK given authorized identifier")
     public void returnsOkGivenAuthorizedIdentifier(Vertx vertx, VertxTestContext vertxTestContext) {
-        vertx.sharedData().getAsyncMap(AuthServiceVerticle.AUTHENTICATED_CLIENTS_MAP, asyncMap -> {
-            vertxTestContext.verify(() -> assertThat(asyncMap.succeeded()).isTrue());
-            var map = asyncMap.result();
-            map.put(IDENTIFIER, true, asyncVoid -> vertxTestContext.verify(() -> assertThat(asyncVoid.succeeded()).isTrue()));
-        });
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(IDENTIFIER);
 
         netClient.connect(3002, "localhost", asyncSocket -> {
             vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
             var socket = asyncSocket.result();
-            socket.handler(buffer -> {
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
                 vertxTestContext.verify(() -> assertThat(buffer.getByte(0)).isEqualTo((byte) 1));
                 vertxTestContext.completeNow();
-            });
-            socket.write(Buffer.buffer(IDENTIFIER + "input"));
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("input"))).toBuffer());
         });
     }
 
     @Test
     @DisplayName("Echos input in all caps")
     public void echosInputInAllCaps(Vertx vertx, VertxTestContext vertxTestContext) {
-        vertx.sharedData().getAsyncMap(AuthServiceVerticle.AUTHENTICATED_CLIENTS_MAP, asyncMap -> {
-            vertxTestContext.verify(() -> assertThat(asyncMap.succeeded()).isTrue());
-            var map = asyncMap.result();
-            map.put(IDENTIFIER, true, asyncVoid -> vertxTestContext.verify(() -> assertThat(asyncVoid.succeeded()).isTrue()));
-        });
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(IDENTIFIER);
+
         netClient.connect(3002, "localhost", asyncSocket -> {
             vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
             var socket = asyncSocket.result();
-            socket.handler(buffer -> {
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
                 vertxTestContext.verify(() -> assertThat(buffer.getString(1, buffer.length())).isEqualTo("INPUT"));
                 vertxTestContext.completeNow();
-            });
-            socket.write(Buffer.buffer(IDENTIFIER + "input"));
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("input"))).toBuffer());
+        });
+    }
+
+    @Test
+    @DisplayName("Echos input given a token starting with the batch marker")
+    public void echosInputGivenTokenStartingWithMarker(Vertx vertx, VertxTestContext vertxTestContext) {
+        var token = UUID.fromString("ff234567-89ab-cdef-0123-456789abcdef");
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(token);
+
+        netClient.connect(3002, "localhost", asyncSocket -> {
+            vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
+            var socket = asyncSocket.result();
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
+                vertxTestContext.verify(() -> {
+                    assertThat(buffer.getByte(0)).isEqualTo((byte) 1);
+                    assertThat(buffer.getString(1, buffer.length())).isEqualTo("INPUT");
+                });
+                vertxTestContext.completeNow();
+            }, vertxTestContext::failNow));
+            var encodedToken = TokenStore.encode(token);
+            vertxTestContext.verify(() -> assertThat(encodedToken.getByte(0)).isEqualTo(Batch.MARKER));
+            socket.write(new Frame(1, Batch.single(encodedToken, Buffer.buffer("input"))).toBuffer());
         });
     }
+
+    @Test
+    @DisplayName("Eventually returns NOK given identifier removed after validation")
+    public void returnsNokGivenRemovedIdentifier(Vertx vertx, VertxTestContext vertxTestContext) {
+        var tokenStore = TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL);
+        tokenStore.add(IDENTIFIER);
+
+        netClient.connect(3002, "localhost", asyncSocket -> {
+            vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
+            var socket = asyncSocket.result();
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
+                if (frame.id() == 1) {
+                    vertxTestContext.verify(() -> assertThat(buffer.getByte(0)).isEqualTo((byte) 1));
+                    tokenStore.remove(IDENTIFIER);
+                }
+
+                if (buffer.getByte(0) == 0) {
+                    vertxTestContext.completeNow();
+                } else {
+                    vertx.setTimer(10, id -> socket.write(new Frame(frame.id() + 1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("input"))).toBuffer()));
+                }
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("input"))).toBuffer());
+        });
+    }
+
+    @Test
+    @DisplayName("Echos all inputs of a batch in all caps")
+    public void echosBatchInAllCaps(Vertx vertx, VertxTestContext vertxTestContext) {
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(IDENTIFIER);
+        var inputs = List.of(Buffer.buffer("first"), Buffer.buffer("sécond"));
+
+        netClient.connect(3002, "localhost", asyncSocket -> {
+            vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
+            var socket = asyncSocket.result();
+            socket.handler(new FrameParser(frame -> {
+                var buffer = frame.payload();
+                vertxTestContext.verify(() -> {
+                    assertThat(frame.id()).isEqualTo(1);
+                    assertThat(buffer.getByte(0)).isEqualTo((byte) 1);
+                    assertThat(Batch.items(buffer, 1)).containsExactly(Buffer.buffer("FIRST"), Buffer.buffer("SÉCOND"));
+                });
+                vertxTestContext.completeNow();
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Batch.request(TokenStore.encode(IDENTIFIER), inputs)).toBuffer());
+        });
+    }
+
+    @Test
+    @DisplayName("Returns NOK for a batch given unknown identifier")
+    public void returnsNokForBatchGivenUnknownId(VertxTestContext vertxTestContext) {
+        netClient.connect(3002, "localhost", asyncSocket -> {
+            vertxTestContext.verify(() -> assertThat(asyncSocket.succeeded()).isTrue());
+            var socket = asyncSocket.result();
+            socket.handler(new FrameParser(frame -> {
+                vertxTestContext.verify(() -> assertThat(frame.payload()).isEqualTo(Buffer.buffer(new byte[] { 0 })));
+                vertxTestContext.completeNow();
+            }, vertxTestContext::failNow));
+            socket.write(new Frame(1, Batch.request(TokenStore.encode(IDENTIFIER), List.of(Buffer.buffer("input")))).toBuffer());
+        });
+    }
+
+    @Test
+    @DisplayName("Verifies HMAC tokens without the token store")
+    public void verifiesHmacTokens(Vertx vertx, VertxTestContext vertxTestContext) {
+        var secret = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+        var config = new JsonObject().put("echoPort", 3012).put("tokenType", "hmac").put("tokenSecret", secret);
+        var token = new HmacTokenGenerator(secret, 60_000).generate();
+
+        vertx.deployVerticle(new ScreamingEchoServiceVerticle(), new DeploymentOptions().setConfig(config))
+                .compose(id -> netClient.connect(3012, "localhost"))
+                .onComplete(vertxTestContext.succeeding(socket -> {
+                    socket.handler(new FrameParser(frame -> {
+                        vertxTestContext.verify(() -> assertThat(frame.payload()).isEqualTo(Buffer.buffer(new byte[] { 1 }).appendString("INPUT")));
+                        vertxTestContext.completeNow();
+                    }, vertxTestContext::failNow));
+                    socket.write(new Frame(1, Batch.single(token, Buffer.buffer("input"))).toBuffer());
+                }));
+    }
+
+    @Test
+    @DisplayName("Upper-cases large inputs on a worker thread")
+    public void upperCasesLargeInputsOnWorker(Vertx vertx, VertxTestContext vertxTestContext) {
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(IDENTIFIER);
+        var config = new JsonObject().put("echoPort", 3013).put("offloadThreshold", 10);
+
+        vertx.deployVerticle(new ScreamingEchoServiceVerticle(), new DeploymentOptions().setConfig(config))
+                .compose(id -> netClient.connect(3013, "localhost"))
+                .onComplete(vertxTestContext.succeeding(socket -> {
+                    socket.handler(new FrameParser(frame -> {
+                        vertxTestContext.verify(() -> {
+                            assertThat(frame.payload()).isEqualTo(Buffer.buffer(new byte[] { 1 }).appendString("LARGE INPUT"));
+                            assertThat(PipelineMetrics.shared(vertx).stageTimer("echo.offload").count()).isEqualTo(1);
+                        });
+                        vertxTestContext.completeNow();
+                    }, vertxTestContext::failNow));
+                    socket.write(new Frame(1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("large input"))).toBuffer());
+                }));
+    }
+
+    @Test
+    @DisplayName("Stops reading requests while too many large inputs of a connection are waiting for a worker")
+    public void pausesWhileTooManyLargeInputsAreInFlight(Vertx vertx, VertxTestContext vertxTestContext) {
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(IDENTIFIER);
+        var config = new JsonObject().put("echoPort", 3013).put("offloadThreshold", 10).put("offloadPoolSize", 2)
+                .put("serverMaxInFlight", 2);
+        var request = Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("large input"));
+        var workers = new CountDownLatch(1);
+        var responses = new AtomicInteger();
+
+        vertx.deployVerticle(new ScreamingEchoServiceVerticle(), new DeploymentOptions().setConfig(config))
+                .compose(id -> {
+                    var offloadPool = vertx.createSharedWorkerExecutor("echo-offload");
+                    for (var i = 0; i < 2; ++i) {
+                        offloadPool.executeBlocking(() -> workers.await(10, TimeUnit.SECONDS), false);
+                    }
+                    return netClient.connect(3013, "localhost");
+                })
+                .onComplete(vertxTestContext.succeeding(socket -> {
+                    socket.handler(new FrameParser(frame -> {
+                        vertxTestContext.verify(() -> assertThat(frame.payload()).isEqualTo(Buffer.buffer(new byte[] { 1 }).appendString("LARGE INPUT")));
+                        if (responses.incrementAndGet() == 3) {
+                            vertxTestContext.completeNow();
+                        }
+                    }, vertxTestContext::failNow));
+                    socket.write(new Frame(1, request).toBuffer().appendBuffer(new Frame(2, request).toBuffer()));
+                    vertx.setTimer(100, id -> socket.write(new Frame(3, request).toBuffer()));
+                    vertx.setTimer(200, id -> {
+                        vertxTestContext.verify(() -> assertThat(PipelineMetrics.shared(vertx).workerQueue("echo")).hasValue(2));
+                        workers.countDown();
+                    });
+                }));
+    }
+
+    @Test
+    @DisplayName("Returns BUSY when too many large inputs are queued")
+    public void returnsBusyWhenQueueIsFull(Vertx vertx, VertxTestContext vertxTestContext) {
+        TokenStore.shared(vertx, TokenStore.DEFAULT_CAPACITY, TokenStore.DEFAULT_TTL).add(IDENTIFIER);
+        var config = new JsonObject().put("echoPort", 3013).put("offloadThreshold", 10).put("offloadMaxQueueSize", 0);
+
+        vertx.deployVerticle(new ScreamingEchoServiceVerticle(), new DeploymentOptions().setConfig(config))
+                .compose(id -> netClient.connect(3013, "localhost"))
+                .onComplete(vertxTestContext.succeeding(socket -> {
+                    socket.handler(new FrameParser(frame -> {
+                        vertxTestContext.verify(() -> assertThat(frame.payload()).isEqualTo(Buffer.buffer(new byte[] { 2 })));
+                        vertxTestContext.completeNow();
+                    }, vertxTestContext::failNow));
+                    socket.write(new Frame(1, Batch.single(TokenStore.encode(IDENTIFIER), Buffer.buffer("large input"))).toBuffer());
+                }));
+    }
 }
@@ -0,0 +1,75 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+
+class ServerConnectionTest {
+
+    private final NetSocket socket = mock(NetSocket.class);
+    private final List<Promise<Void>> writes = new ArrayList<>();
+    private final Timer pausedTimer = Timer.builder("paused").register(new SimpleMeterRegistry());
+
+    @BeforeEach
+    public void setUp() {
+        when(socket.write(any(Buffer.class))).thenAnswer(invocation -> {
+            var promise = Promise.<Void>promise();
+            writes.add(promise);
+            return promise.future();
+        });
+    }
+
+    @Test
+    @DisplayName("Pauses reading once too many requests are in flight")
+    public void pausesWhenTooManyInFlight() {
+        var connection = new ServerConnection(socket, 2, pausedTimer);
+
+        connection.received();
+        verify(socket, never()).pause();
+
+        connection.received();
+        verify(socket).pause();
+        assertThat(connection.isPaused()).isTrue();
+
+        connection.write(Buffer.buffer("first"));
+        verify(socket, never()).resume();
+
+        writes.get(0).complete();
+        verify(socket).resume();
+        assertThat(connection.isPaused()).isFalse();
+        assertThat(pausedTimer.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Pauses reading while the write queue is full")
+    @SuppressWarnings("unchecked")
+    public void pausesWhileWriteQueueIsFull() {
+        var drainHandler = ArgumentCaptor.forClass(Handler.class);
+        when(socket.writeQueueFull()).thenReturn(true);
+        var connection = new ServerConnection(socket, 100, pausedTimer);
+        verify(socket).drainHandler(drainHandler.capture());
+
+        connection.received();
+        connection.write(Buffer.buffer("response"));
+        writes.get(0).complete();
+        verify(socket).pause();
+        verify(socket, never()).resume();
+
+        when(socket.writeQueueFull()).thenReturn(false);
+        drainHandler.getValue().handle(null);
+        verify(socket).resume();
+    }
+}
@@ -1,14 +1,23 @@
 package nl.kabisa.vertx.tcp;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import com.google.common.primitives.Bytes;
 
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.ThreadingModel;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetServer;
 import io.vertx.junit5.VertxExtension;
@@ -18,7 +27,7 @@ import io.vertx.junit5.VertxTestContext;
 class TcpClientVerticleTest {
 
     private static final String REQUEST_ADDRESS = "tcp.client.request";
-    private static final JsonObject INPUT_OBJECT = new JsonObject().put("body", "input");
+    private static final EchoRequest INPUT_OBJECT = new EchoRequest(Buffer.buffer("input"));
 
     private final TcpClientVerticle tcpClientVerticle = new TcpClientVerticle();
 
@@ -37,61 +46,317 @@ class TcpClientVerticleTest {
     @DisplayName("Replies with failure if authentication fails")
     public void repliesWithFailure(Vertx vertx, VertxTestContext vertxTestContext) {
         authService.connectHandler(socket ->
-                socket.handler(buffer -> {
+                socket.handler(new FrameParser(frame -> {
                     vertxTestContext.checkpoint();
-                    socket.write(Buffer.buffer(new byte[] { 0 }));
-                }));
-        authService.listen(3001, "localhost");
-
-        vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT).andThen(reply -> {
-            vertxTestContext.verify(() -> assertThat(reply.failed()).isTrue());
-            vertxTestContext.completeNow();
-        });
+                    socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 0 })).toBuffer());
+                }, vertxTestContext::failNow)));
+        authService.listen(3001, "localhost")
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .andThen(reply -> {
+                    vertxTestContext.verify(() -> assertThat(reply.failed()).isTrue());
+                    vertxTestContext.completeNow();
+                });
     }
 
     @Test
     @DisplayName("Forwards to echo service")
     public void forwardsToEchoService(Vertx vertx, VertxTestContext vertxTestContext) {
         authService.connectHandler(socket ->
-                socket.handler(buffer -> {
+                socket.handler(new FrameParser(frame -> {
                     vertxTestContext.checkpoint();
-                    socket.write(Buffer.buffer(new byte[] { 1, 0 }));
-                }));
-        authService.listen(3001, "localhost");
+                    socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer());
+                }, vertxTestContext::failNow)));
 
         echoService.connectHandler(socket ->
-                socket.handler(buffer -> {
-                    vertxTestContext.verify(() -> assertThat(buffer.getString(1, buffer.length())).isEqualTo("input"));
+                socket.handler(new FrameParser(frame -> {
+                    vertxTestContext.verify(() -> assertThat(frame.payload().getString(2, frame.payload().length())).isEqualTo("input"));
                     vertxTestContext.completeNow();
-                }));
-        echoService.listen(3002, "localhost");
+                }, vertxTestContext::failNow)));
 
-        vertx.eventBus().send(REQUEST_ADDRESS, INPUT_OBJECT);
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .onSuccess(server -> vertx.eventBus().send(REQUEST_ADDRESS, INPUT_OBJECT));
     }
 
     @Test
     @DisplayName("Returns result of echo service")
     public void returnsResultOfEchoService(Vertx vertx, VertxTestContext vertxTestContext) {
         authService.connectHandler(socket ->
-                socket.handler(buffer -> {
+                socket.handler(new FrameParser(frame -> {
                     vertxTestContext.checkpoint();
-                    socket.write(Buffer.buffer(new byte[] { 1, 0 }));
-                }));
-        authService.listen(3001, "localhost");
+                    socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer());
+                }, vertxTestContext::failNow)));
 
         echoService.connectHandler(socket ->
-                socket.handler(buffer -> {
+                socket.handler(new FrameParser(frame -> {
                     vertxTestContext.checkpoint();
-                    socket.write(Buffer.buffer(Bytes.concat(new byte[] { 1 }, "output".getBytes())));
-                }));
-        echoService.listen(3002, "localhost");
-
-        vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT).andThen(reply -> {
-            vertxTestContext.verify(() -> {
-                assertThat(reply.succeeded()).isTrue();
-                assertThat(reply.result().body()).isEqualTo(Buffer.buffer("output"));
-            });
-            vertxTestContext.completeNow();
-        });
+                    socket.write(new Frame(frame.id(), Buffer.buffer(Bytes.concat(new byte[] { 1 }, "output".getBytes()))).toBuffer());
+                }, vertxTestContext::failNow)));
+
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .andThen(reply -> {
+                    vertxTestContext.verify(() -> {
+                        assertThat(reply.succeeded()).isTrue();
+                        assertThat(reply.result().body()).isEqualTo(new EchoResponse(Buffer.buffer("output")));
+                    });
+                    vertxTestContext.completeNow();
+                });
+    }
+
+    @Test
+    @DisplayName("Returns result of echo service when running on virtual threads")
+    public void returnsResultOnVirtualThreads(Vertx vertx, VertxTestContext vertxTestContext) {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads require Java 21");
+
+        var authentications = new AtomicInteger();
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> {
+                    // The first token is rejected by the echo service, so the client must authenticate again
+                    var token = authentications.incrementAndGet();
+                    socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, (byte) token })).toBuffer());
+                }, vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> {
+                    var status = frame.payload().getByte(1) == 1 ? new byte[] { 0 } : Bytes.concat(new byte[] { 1 }, "output".getBytes());
+                    socket.write(new Frame(frame.id(), Buffer.buffer(status)).toBuffer());
+                }, vertxTestContext::failNow)));
+
+        var options = new DeploymentOptions().setThreadingModel(ThreadingModel.VIRTUAL_THREAD);
+        vertx.undeploy(tcpClientVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new TcpClientVerticle(), options))
+                .compose(id -> authService.listen(3001, "localhost"))
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().<EchoResponse> request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.succeeding(reply -> vertxTestContext.verify(() -> {
+                    assertThat(reply.body()).isEqualTo(new EchoResponse(Buffer.buffer("output")));
+                    assertThat(authentications).hasValue(2);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Calls services deployed in the same Vert.x instance without TCP")
+    public void callsLocalServices(Vertx vertx, VertxTestContext vertxTestContext) {
+        // The services listen on other ports than the ones the client connects to
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("authPort", 3031).put("echoPort", 3032));
+
+        vertx.deployVerticle(new AuthServiceVerticle(), options)
+                .compose(id -> vertx.deployVerticle(new ScreamingEchoServiceVerticle(), options))
+                .compose(id -> vertx.eventBus().<EchoResponse> request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.succeeding(reply -> vertxTestContext.verify(() -> {
+                    assertThat(reply.body()).isEqualTo(new EchoResponse(Buffer.buffer("INPUT")));
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Fetches tokens regardless of the deadline of the request that started the fetch")
+    public void fetchesTokenWithAuthTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> vertx.setTimer(100, id ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer())),
+                        vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(Bytes.concat(new byte[] { 1 }, "output".getBytes()))).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> {
+                    var impatient = vertx.eventBus().<EchoResponse> request(REQUEST_ADDRESS,
+                            new EchoRequest(Buffer.buffer("input"), System.currentTimeMillis() + 10));
+                    var patient = vertx.eventBus().<EchoResponse> request(REQUEST_ADDRESS, INPUT_OBJECT);
+                    return Future.join(impatient, patient).transform(all -> Future.succeededFuture(List.of(impatient, patient)));
+                })
+                .onComplete(vertxTestContext.succeeding(replies -> vertxTestContext.verify(() -> {
+                    assertThat(replies.get(0).cause()).isInstanceOf(ReplyException.class);
+                    assertThat(((ReplyException) replies.get(0).cause()).failureCode()).isEqualTo(504);
+                    assertThat(replies.get(1).result().body()).isEqualTo(new EchoResponse(Buffer.buffer("output")));
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Keeps the circuit breaker closed when requests time out because of short client deadlines")
+    public void ignoresShortClientDeadlines(Vertx vertx, VertxTestContext vertxTestContext) {
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        // Only answers requests that are not meant to time out
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> {
+                    if (frame.payload().getString(2, frame.payload().length()).equals("input")) {
+                        socket.write(new Frame(frame.id(), Buffer.buffer(Bytes.concat(new byte[] { 1 }, "output".getBytes()))).toBuffer());
+                    }
+                }, vertxTestContext::failNow)));
+
+        Future<Void> shortRequests = authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .mapEmpty();
+        for (var i = 0; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD + 1; ++i) {
+            shortRequests = shortRequests.compose(v -> vertx.eventBus()
+                    .request(REQUEST_ADDRESS, new EchoRequest(Buffer.buffer("slow"), System.currentTimeMillis() + 20))
+                    .transform(reply -> Future.succeededFuture()));
+        }
+
+        shortRequests.compose(v -> vertx.eventBus().<EchoResponse> request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.succeeding(reply -> vertxTestContext.verify(() -> {
+                    assertThat(reply.body()).isEqualTo(new EchoResponse(Buffer.buffer("output")));
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Reuses token for consecutive requests")
+    public void reusesToken(Vertx vertx, VertxTestContext vertxTestContext) {
+        var authentications = new AtomicInteger();
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> {
+                    authentications.incrementAndGet();
+                    socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer());
+                }, vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(Bytes.concat(new byte[] { 1 }, "output".getBytes()))).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .compose(reply -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.succeeding(reply -> vertxTestContext.verify(() -> {
+                    assertThat(authentications).hasValue(1);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Authenticates again if echo service rejects token")
+    public void authenticatesAgainIfTokenIsRejected(Vertx vertx, VertxTestContext vertxTestContext) {
+        var authentications = new AtomicInteger();
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, (byte) authentications.incrementAndGet() })).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> {
+                    if (frame.payload().getByte(1) == 1) {
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 0 })).toBuffer());
+                    } else {
+                        socket.write(new Frame(frame.id(), Buffer.buffer(Bytes.concat(new byte[] { 1 }, "output".getBytes()))).toBuffer());
+                    }
+                }, vertxTestContext::failNow)));
+
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.succeeding(reply -> vertxTestContext.verify(() -> {
+                    assertThat(authentications).hasValue(2);
+                    assertThat(reply.body()).isEqualTo(new EchoResponse(Buffer.buffer("output")));
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Forwards concurrent requests to echo service in a single batch")
+    public void forwardsBatch(Vertx vertx, VertxTestContext vertxTestContext) {
+        var frames = new AtomicInteger();
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame -> {
+                    frames.incrementAndGet();
+                    var outputs = Batch.items(frame.payload(), 2).stream()
+                            .map(input -> Buffer.buffer(input.toString().toUpperCase()))
+                            .toList();
+                    socket.write(new Frame(frame.id(), Batch.appendItems(Buffer.buffer(new byte[] { 1 }), outputs)).toBuffer());
+                }, vertxTestContext::failNow)));
+
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("batchMaxSize", 3).put("batchMaxDelay", 60_000));
+        vertx.undeploy(tcpClientVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new TcpClientVerticle(), options))
+                .compose(id -> authService.listen(3001, "localhost"))
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> Future.all(List.of("a", "b", "c").stream()
+                        .map(input -> vertx.eventBus().<EchoResponse> request(REQUEST_ADDRESS, new EchoRequest(Buffer.buffer(input))))
+                        .toList()))
+                .onComplete(vertxTestContext.succeeding(replies -> vertxTestContext.verify(() -> {
+                    assertThat(replies.<Message<EchoResponse>> list())
+                            .extracting(reply -> reply.body().body().toString())
+                            .containsExactly("A", "B", "C");
+                    assertThat(frames).hasValue(1);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Replies with 504 if echo service does not answer before deadline")
+    public void repliesWithTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket -> socket.handler(buffer -> {}));
+
+        var request = new EchoRequest(Buffer.buffer("input"), System.currentTimeMillis() + 200);
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, request))
+                .onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+                    assertThat(cause).isInstanceOf(ReplyException.class);
+                    assertThat(((ReplyException) cause).failureCode()).isEqualTo(504);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Replies with 503 once the circuit breaker for the auth service is open")
+    public void repliesWithUnavailable(Vertx vertx, VertxTestContext vertxTestContext) {
+        var options = new DeploymentOptions().setConfig(new JsonObject().put("breakerFailureThreshold", 1));
+        vertx.undeploy(tcpClientVerticle.deploymentID())
+                .compose(v -> vertx.deployVerticle(new TcpClientVerticle(), options))
+                .compose(id -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .recover(cause -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+                    assertThat(cause).isInstanceOf(ReplyException.class);
+                    assertThat(((ReplyException) cause).failureCode()).isEqualTo(503);
+                    vertxTestContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Replies with 503 if echo service is busy")
+    public void repliesWithUnavailableIfBusy(Vertx vertx, VertxTestContext vertxTestContext) {
+        authService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 1, 0 })).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        echoService.connectHandler(socket ->
+                socket.handler(new FrameParser(frame ->
+                        socket.write(new Frame(frame.id(), Buffer.buffer(new byte[] { 2 })).toBuffer()),
+                        vertxTestContext::failNow)));
+
+        authService.listen(3001, "localhost")
+                .compose(server -> echoService.listen(3002, "localhost"))
+                .compose(server -> vertx.eventBus().request(REQUEST_ADDRESS, INPUT_OBJECT))
+                .onComplete(vertxTestContext.failing(cause -> vertxTestContext.verify(() -> {
+                    assertThat(((ReplyException) cause).failureCode()).isEqualTo(503);
+                    vertxTestContext.completeNow();
+                })));
     }
 }
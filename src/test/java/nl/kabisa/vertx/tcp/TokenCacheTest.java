@@ -0,0 +1,88 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+
+class TokenCacheTest {
+
+    private static final Buffer TOKEN = Buffer.buffer("token");
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private Future<Buffer> fetch() {
+        fetches.incrementAndGet();
+        return Future.succeededFuture(TOKEN);
+    }
+
+    @Test
+    @DisplayName("Reuses cached token until it expires")
+    public void reusesCachedToken() {
+        var tokenCache = new TokenCache(60_000);
+
+        tokenCache.get(this::fetch);
+        var token = tokenCache.get(this::fetch);
+
+        assertThat(token.result()).isEqualTo(TOKEN);
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Fetches again once the token has expired")
+    public void fetchesAgainAfterExpiry() {
+        var tokenCache = new TokenCache(0);
+
+        tokenCache.get(this::fetch);
+        tokenCache.get(this::fetch);
+
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Shares a single in-flight fetch between concurrent callers")
+    public void sharesInFlightFetch() {
+        var tokenCache = new TokenCache(60_000);
+        var promise = Promise.<Buffer>promise();
+
+        var first = tokenCache.get(() -> {
+            fetches.incrementAndGet();
+            return promise.future();
+        });
+        var second = tokenCache.get(this::fetch);
+        promise.complete(TOKEN);
+
+        assertThat(fetches).hasValue(1);
+        assertThat(first.result()).isEqualTo(TOKEN);
+        assertThat(second.result()).isEqualTo(TOKEN);
+    }
+
+    @Test
+    @DisplayName("Fetches again after invalidation of the cached token")
+    public void fetchesAgainAfterInvalidation() {
+        var tokenCache = new TokenCache(60_000);
+
+        tokenCache.get(this::fetch);
+        tokenCache.invalidate(TOKEN);
+        tokenCache.get(this::fetch);
+
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Ignores invalidation of a token that is no longer cached")
+    public void ignoresInvalidationOfStaleToken() {
+        var tokenCache = new TokenCache(60_000);
+
+        tokenCache.get(this::fetch);
+        tokenCache.invalidate(Buffer.buffer("stale"));
+        tokenCache.get(this::fetch);
+
+        assertThat(fetches).hasValue(1);
+    }
+}
@@ -0,0 +1,88 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import org.junit.jupiter.api.*;
+
+class TokenStoreTest {
+
+    private static final UUID FIRST = UUID.randomUUID();
+    private static final UUID SECOND = UUID.randomUUID();
+    private static final UUID THIRD = UUID.randomUUID();
+
+    @Test
+    @DisplayName("Contains added tokens")
+    public void containsAddedTokens() {
+        var tokenStore = new TokenStore(10, 60_000);
+
+        tokenStore.add(FIRST);
+
+        assertThat(tokenStore.contains(FIRST)).isTrue();
+        assertThat(tokenStore.contains(SECOND)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Does not contain removed tokens")
+    public void doesNotContainRemovedTokens() {
+        var tokenStore = new TokenStore(10, 60_000);
+
+        tokenStore.add(FIRST);
+        tokenStore.remove(FIRST);
+
+        assertThat(tokenStore.contains(FIRST)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Does not contain expired tokens")
+    public void doesNotContainExpiredTokens() {
+        var tokenStore = new TokenStore(10, 0);
+
+        tokenStore.add(FIRST);
+
+        assertThat(tokenStore.contains(FIRST)).isFalse();
+        assertThat(tokenStore.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Evicts least recently used token when full")
+    public void evictsLeastRecentlyUsedToken() {
+        var tokenStore = new TokenStore(2, 60_000);
+
+        tokenStore.add(FIRST);
+        tokenStore.add(SECOND);
+        tokenStore.contains(FIRST);
+        tokenStore.add(THIRD);
+
+        assertThat(tokenStore.contains(FIRST)).isTrue();
+        assertThat(tokenStore.contains(SECOND)).isFalse();
+        assertThat(tokenStore.contains(THIRD)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Sweeps expired tokens")
+    public void sweepsExpiredTokens() {
+        var tokenStore = new TokenStore(10, 0);
+
+        tokenStore.add(FIRST);
+        tokenStore.add(SECOND);
+        tokenStore.sweep(0);
+
+        assertThat(tokenStore.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Reports tokens that are removed or evicted before they expire")
+    public void reportsInvalidatedTokens() {
+        var invalidated = new ArrayList<UUID>();
+        var tokenStore = new TokenStore(1, 60_000, invalidated::add);
+
+        tokenStore.add(FIRST);
+        tokenStore.add(SECOND);
+        tokenStore.remove(SECOND);
+
+        assertThat(invalidated).containsExactly(FIRST, SECOND);
+    }
+}
@@ -0,0 +1,73 @@
+package nl.kabisa.vertx.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import org.junit.jupiter.api.*;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+class UpperCaseTest {
+
+    private static Frame parse(Buffer buffer) {
+        var frames = new ArrayList<Frame>();
+        new FrameParser(frames::add, e -> {}).handle(buffer);
+        assertThat(frames).hasSize(1);
+        return frames.get(0);
+    }
+
+    private static String upperCase(String input) {
+        var frame = parse(UpperCase.frame(7, (byte) 1, Buffer.buffer("token:" + input), 6));
+
+        assertThat(frame.id()).isEqualTo(7);
+        assertThat(frame.payload().getByte(0)).isEqualTo((byte) 1);
+
+        return frame.payload().getString(1, frame.payload().length(), StandardCharsets.UTF_8.name());
+    }
+
+    @Test
+    @DisplayName("Upper-cases ASCII text")
+    public void upperCasesAscii() {
+        assertThat(upperCase("no touching! 123 {az}")).isEqualTo("NO TOUCHING! 123 {AZ}");
+    }
+
+    @Test
+    @DisplayName("Upper-cases text with multibyte characters")
+    public void upperCasesMultibyteCharacters() {
+        assertThat(upperCase("héllo wörld 👍 ß")).isEqualTo("HÉLLO WÖRLD 👍 SS");
+    }
+
+    @Test
+    @DisplayName("Handles empty input")
+    public void handlesEmptyInput() {
+        assertThat(upperCase("")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Upper-cases in chunks without splitting characters")
+    public void upperCasesInChunks() {
+        var input = "héllo wörld 👍 ß".repeat(10);
+
+        for (var chunkSize : new int[] { 1, 2, 3, 7, 1024 }) {
+            var frame = parse(UpperCase.chunkedFrame(7, (byte) 1, Buffer.buffer("token:" + input), 6, chunkSize));
+
+            assertThat(frame.payload().getString(1, frame.payload().length(), StandardCharsets.UTF_8.name()))
+                    .isEqualTo(input.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    @Test
+    @DisplayName("Only upper-cases readable bytes of direct buffers")
+    public void onlyUpperCasesReadableBytes() {
+        var input = Unpooled.directBuffer().writeBytes("token:input".getBytes(StandardCharsets.UTF_8)).skipBytes(6);
+
+        var frame = parse(Buffer.buffer().appendBytes(ByteBufUtil.getBytes(UpperCase.frame(1, (byte) 1, input))));
+
+        assertThat(frame.payload().getString(1, frame.payload().length())).isEqualTo("INPUT");
+    }
+}